@@ -0,0 +1,64 @@
+package eu.europa.ec.eurostat.los.benchmarks;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.rdf.model.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.europa.ec.eurostat.los.codes.CodelistMaker;
+import eu.europa.ec.eurostat.los.utils.Catalogue;
+import eu.europa.ec.eurostat.los.utils.MetadataWorkbook;
+import eu.europa.ec.eurostat.los.utils.MetadataWorkbook.MetadataSheet;
+
+/**
+ * Builds a code list from a sheet of the metadata workbook with
+ * CodelistMaker.createMultipleLevelsConceptScheme, for the hierarchical lists
+ * and a flat one. The workbook is read in the setup.
+ * <p>
+ * Run from the tourisme directory with: java -jar
+ * ../tourisme-benchmarks/target/benchmarks.jar ConceptSchemeBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConceptSchemeBenchmark {
+
+	/** Number of levels of the code lists, as CodelistMaker builds them */
+	private static final Map<String, Integer> LEVELS = new HashMap<>();
+	static {
+		LEVELS.put("PARTNER", 3);
+		LEVELS.put("NACE_R2", 2);
+		LEVELS.put("OBS_STATUS", 1);
+	}
+
+	@Param({ "PARTNER", "NACE_R2", "OBS_STATUS" })
+	public String sheetName;
+
+	private MetadataSheet sheet;
+
+	@Setup
+	public void load() throws IOException {
+		sheet = MetadataWorkbook.load(Catalogue.get().getMetadataFile()).getSheet(sheetName);
+	}
+
+	@Benchmark
+	public Model createMultipleLevelsConceptScheme() {
+		return CodelistMaker.createMultipleLevelsConceptScheme(sheetName.toLowerCase(), sheet, LEVELS.get(sheetName));
+	}
+}
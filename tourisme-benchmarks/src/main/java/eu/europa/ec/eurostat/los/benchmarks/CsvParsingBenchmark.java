@@ -0,0 +1,105 @@
+package eu.europa.ec.eurostat.los.benchmarks;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.opencsv.CSVReaderHeaderAware;
+
+import eu.europa.ec.eurostat.los.codes.DataCubeMaker;
+import eu.europa.ec.eurostat.los.utils.MappedCsvReader;
+
+/**
+ * Reads a synthetic observation file with the opencsv reader formerly used by
+ * DataCubeMaker, with the memory-mapped reader, and with DataCubeMaker.lireCsv
+ * which fills a map per row from the latter. All select the rows of one
+ * measure and sum their values, which touches the columns the conversion reads.
+ * The files of 1M, 10M and 100M rows are generated on the first run.
+ * <p>
+ * Run from the tourisme directory with: java -jar
+ * ../tourisme-benchmarks/target/benchmarks.jar CsvParsingBenchmark, adding
+ * -p rows=1000000 for a quick run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class CsvParsingBenchmark {
+
+	private static final String MEASURE = "occ_ni";
+
+	@Param({ "1000000", "10000000", "100000000" })
+	public long rows;
+
+	@Param(SyntheticCsv.DEFAULT_TEMPLATE)
+	public String template;
+
+	private String csvFile;
+
+	@Setup
+	public void generate() throws IOException {
+		csvFile = SyntheticCsv.cached(template, rows).getPath();
+	}
+
+	@Benchmark
+	public long csvReaderHeaderAware() throws IOException {
+		long sum = 0;
+		try (Reader fileReader = new InputStreamReader(new FileInputStream(csvFile), StandardCharsets.UTF_8)) {
+			CSVReaderHeaderAware reader = new CSVReaderHeaderAware(fileReader);
+			Map<String, String> nextLine;
+			while ((nextLine = reader.readMap()) != null) {
+				if (MEASURE.equals(nextLine.get("MEASURE"))) {
+					sum += Long.parseLong(nextLine.get("OBS_VALUE")) + nextLine.get("NUTS").length();
+				}
+			}
+			reader.close();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long mappedCsvReader() throws IOException {
+		long sum = 0;
+		byte[] measure = MEASURE.getBytes(StandardCharsets.UTF_8);
+		try (MappedCsvReader reader = MappedCsvReader.open(csvFile)) {
+			int measureColumn = reader.column("MEASURE");
+			int valueColumn = reader.column("OBS_VALUE");
+			int nutsColumn = reader.column("NUTS");
+			while (reader.next()) {
+				if (reader.equalsBytes(measureColumn, measure)) {
+					sum += reader.getLong(valueColumn) + reader.getInterned(nutsColumn).length();
+				}
+			}
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long dataCubeMakerLireCsv() throws IOException {
+		long[] sum = { 0 };
+		DataCubeMaker.lireCsv(csvFile, "benchmark", nextLine -> {
+			if (MEASURE.equals(nextLine.get("MEASURE"))) {
+				sum[0] += Long.parseLong(nextLine.get("OBS_VALUE")) + nextLine.get("NUTS").length();
+			}
+		});
+		return sum[0];
+	}
+}
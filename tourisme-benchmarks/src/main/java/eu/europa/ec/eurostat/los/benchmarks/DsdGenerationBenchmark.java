@@ -0,0 +1,52 @@
+package eu.europa.ec.eurostat.los.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.rdf.model.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.europa.ec.eurostat.los.tourisme.DSDModelMaker;
+import eu.europa.ec.eurostat.los.utils.Catalogue;
+import eu.europa.ec.eurostat.los.utils.MetadataWorkbook;
+
+/**
+ * Builds the DSD of a sheet of the metadata workbook with
+ * DSDModelMaker.getDsdModel. The components are shared by the DSDs of a run,
+ * so after the first invocation this measures a DSD whose components are
+ * already built, which is the case of all the DSDs but the first in a run.
+ * <p>
+ * Run from the tourisme directory with: java -jar
+ * ../tourisme-benchmarks/target/benchmarks.jar DsdGenerationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DsdGenerationBenchmark {
+
+	@Param({ "DSD-tourism_nuts_nace_r2", "DSD-tourism-degurba", "DSD-tourism-terrtypo", "DSD-tourism-partner" })
+	public String sheetName;
+
+	@Setup
+	public void load() throws IOException {
+		MetadataWorkbook.load(Catalogue.get().getMetadataFile());
+	}
+
+	@Benchmark
+	public Model getDsdModel() throws IOException {
+		return DSDModelMaker.getDsdModel(sheetName, "benchmark-" + DSDModelMaker.OCCNI.getSuffix(), DSDModelMaker.OCCNI);
+	}
+}
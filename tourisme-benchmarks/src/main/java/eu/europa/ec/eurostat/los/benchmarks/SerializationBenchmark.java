@@ -0,0 +1,71 @@
+package eu.europa.ec.eurostat.los.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.system.StreamRDF;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.europa.ec.eurostat.los.utils.OutputFormat;
+
+/**
+ * Serializes a synthetic data set in the output formats, as a whole model the
+ * way DataCubeMaker writes it by default (Turtle is then pretty-printed) and as
+ * a stream of triples the way the -stream option writes it. The output is
+ * counted and discarded, so the disk is not measured.
+ * <p>
+ * Run from the tourisme directory with: java -jar
+ * ../tourisme-benchmarks/target/benchmarks.jar SerializationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class SerializationBenchmark {
+
+	@Param("100000")
+	public long rows;
+
+	@Param({ "TURTLE", "NTRIPLES" })
+	public OutputFormat format;
+
+	private Model model;
+
+	@Setup
+	public void build() throws IOException {
+		model = SyntheticDataSet.model(SyntheticDataSet.rows(rows), SyntheticDataSet.dsd());
+	}
+
+	@Benchmark
+	public long writeModel() {
+		CountingOutputStream out = new CountingOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+		format.write(out, model, SyntheticDataSet.DATA_SET_URI);
+		return out.getByteCount();
+	}
+
+	@Benchmark
+	public long writeStream() {
+		CountingOutputStream out = new CountingOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+		StreamRDF stream = format.openStream(out, SyntheticDataSet.DATA_SET_URI);
+		stream.start();
+		model.getNsPrefixMap().forEach(stream::prefix);
+		model.getGraph().find().forEachRemaining(stream::triple);
+		stream.finish();
+		return out.getByteCount();
+	}
+}
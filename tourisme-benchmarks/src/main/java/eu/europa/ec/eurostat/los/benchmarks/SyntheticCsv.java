@@ -0,0 +1,115 @@
+package eu.europa.ec.eurostat.los.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.lang3.StringUtils;
+
+import eu.europa.ec.eurostat.los.utils.MappedCsvReader;
+
+/**
+ * The <code>SyntheticCsv</code> class scales one of the bundled tourism CSV
+ * files to any number of rows. Each column of a generated row is drawn from the
+ * values of that column in the rows of the template, so the code cardinalities
+ * and frequencies stay those of the real data: occ_ni and occ_arr keep their
+ * share of the rows and OBS_VALUE its distribution. The generation is seeded
+ * and thus reproducible.
+ */
+public class SyntheticCsv {
+
+	public static final String TEMPLATE_DIRECTORY = "../tourisme/src/main/resources/data/";
+	public static final String DEFAULT_TEMPLATE = TEMPLATE_DIRECTORY + "tourism-nuts-nace-r2-fr.csv";
+
+	/** Sizes of the scaled files, in rows */
+	public static final long[] SIZES = { 1000000L, 10000000L, 100000000L };
+
+	private static final long SEED = 42;
+
+	private final String[] header;
+	/** Values of each column, one per row of the template */
+	private final List<String[]> values = new ArrayList<>();
+
+	private SyntheticCsv(String template) throws IOException {
+		List<String[]> rows = new ArrayList<>();
+		try (MappedCsvReader reader = MappedCsvReader.open(template)) {
+			header = reader.getHeader();
+			while (reader.next()) {
+				String[] row = new String[header.length];
+				for (int column = 0; column < header.length; column++) {
+					row[column] = StringUtils.defaultString(reader.getInterned(column));
+				}
+				rows.add(row);
+			}
+		}
+		for (int column = 0; column < header.length; column++) {
+			String[] columnValues = new String[rows.size()];
+			for (int row = 0; row < columnValues.length; row++) {
+				columnValues[row] = rows.get(row)[column];
+			}
+			values.add(columnValues);
+		}
+	}
+
+	/**
+	 * Usage: SyntheticCsv template rows output, or SyntheticCsv template directory
+	 * to write the 1M, 10M and 100M rows files in a directory.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 2) {
+			for (long rows : SIZES) {
+				generate(args[0], rows, new File(args[1], fileName(args[0], rows)));
+			}
+		} else {
+			generate(args[0], Long.parseLong(args[1]), new File(args[2]));
+		}
+	}
+
+	/** Writes a file of a number of rows, header excluded, modeled on a template */
+	public static void generate(String template, long rows, File output) throws IOException {
+		SyntheticCsv generator = new SyntheticCsv(template);
+		Random random = new Random(SEED);
+		try (Writer writer = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8), 1 << 16)) {
+			writer.write(String.join(",", generator.header));
+			writer.write('\n');
+			for (long row = 0; row < rows; row++) {
+				for (int column = 0; column < generator.header.length; column++) {
+					if (column > 0) {
+						writer.write(',');
+					}
+					String[] columnValues = generator.values.get(column);
+					writer.write(columnValues[random.nextInt(columnValues.length)]);
+				}
+				writer.write('\n');
+			}
+		}
+	}
+
+	/**
+	 * Returns a generated file kept in the temporary directory, generating it on
+	 * the first call for a template and a number of rows.
+	 */
+	public static File cached(String template, long rows) throws IOException {
+		File file = new File(System.getProperty("java.io.tmpdir"), fileName(template, rows));
+		if (!file.exists()) {
+			File partial = new File(file.getPath() + ".part");
+			generate(template, rows, partial);
+			if (!partial.renameTo(file)) {
+				throw new IOException("Impossible de renommer " + partial);
+			}
+		}
+		return file;
+	}
+
+	private static String fileName(String template, long rows) {
+		return String.format("%s-%d.csv", StringUtils.removeEnd(new File(template).getName(), ".csv"), rows);
+	}
+}
@@ -0,0 +1,82 @@
+package eu.europa.ec.eurostat.los.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+
+import eu.europa.ec.eurostat.los.codes.CompiledDsd;
+import eu.europa.ec.eurostat.los.codes.Configuration;
+import eu.europa.ec.eurostat.los.codes.DataCubeMaker;
+import eu.europa.ec.eurostat.los.utils.Catalogue;
+import eu.europa.ec.eurostat.los.utils.DataCubeOntology;
+import eu.europa.ec.eurostat.los.utils.OutputFormat;
+
+/**
+ * The <code>SyntheticDataSet</code> class gives the benchmarks of the
+ * conversion stages their inputs: rows of a synthetic CSV file, the compiled
+ * DSD of their data set, and the data set itself as a model or a file. The
+ * paths are those of the default catalogue of the tourisme project, so the
+ * benchmarks which use this class are run from its directory.
+ */
+public class SyntheticDataSet {
+
+	public static final String DATA_SET_NAME = "nuts-nacer2-occni";
+	public static final String MEASURE = "occ_ni";
+	public static final String DSD_FILE = Catalogue.get().outputFile("dsd-tourism-" + DATA_SET_NAME + ".ttl");
+	public static final String DATA_SET_URI = Configuration.BASE_URI + "dataSet/tourism-" + DATA_SET_NAME;
+
+	private SyntheticDataSet() {
+	}
+
+	public static CompiledDsd dsd() {
+		return CompiledDsd.read(DSD_FILE);
+	}
+
+	/**
+	 * Returns the rows of the measure of a synthetic file of a number of rows, as
+	 * DataCubeMaker reads them.
+	 */
+	public static List<Map<String, String>> rows(long rows) throws IOException {
+		List<Map<String, String>> lines = new ArrayList<>();
+		String csvFile = SyntheticCsv.cached(SyntheticCsv.DEFAULT_TEMPLATE, rows).getPath();
+		DataCubeMaker.lireCsv(csvFile, "benchmark", nextLine -> {
+			if (MEASURE.equals(nextLine.get("MEASURE"))) {
+				lines.add(new HashMap<>(nextLine));
+			}
+		});
+		return lines;
+	}
+
+	/** Converts rows to a data set model, as the non-streaming conversion does */
+	public static Model model(List<Map<String, String>> rows, CompiledDsd dsd) {
+		Model model = DataCubeMaker.createDataSetModel();
+		Resource dataSet = model.createResource(DATA_SET_URI, DataCubeOntology.DataSet);
+		for (Map<String, String> row : rows) {
+			DataCubeMaker.traiterLigne(model, dataSet,
+					Configuration.observationURI(DATA_SET_NAME, dsd.observationKey(row)), row, dsd);
+		}
+		return model;
+	}
+
+	/** Writes a data set of a number of rows in the temporary directory, once */
+	public static File file(long rows, OutputFormat format) throws IOException {
+		File file = new File(System.getProperty("java.io.tmpdir"),
+				format.fileName("ds-tourism-" + DATA_SET_NAME + "-" + rows));
+		if (!file.exists()) {
+			Model model = model(rows(rows), dsd());
+			try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+				format.write(out, model, DATA_SET_URI);
+			}
+		}
+		return file;
+	}
+}
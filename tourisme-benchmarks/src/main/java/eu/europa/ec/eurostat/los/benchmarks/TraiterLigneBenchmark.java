@@ -0,0 +1,196 @@
+package eu.europa.ec.eurostat.los.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.NodeIterator;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.ResIterator;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.europa.ec.eurostat.los.codes.CompiledDsd;
+import eu.europa.ec.eurostat.los.codes.Configuration;
+import eu.europa.ec.eurostat.los.codes.DataCubeMaker;
+import eu.europa.ec.eurostat.los.codes.ObservationTripleWriter;
+import eu.europa.ec.eurostat.los.utils.DataCubeOntology;
+
+/**
+ * Converts one row to the triples of its observation, the rows of a synthetic
+ * file being taken in turn: as the conversion did before the DSD was compiled,
+ * scanning the DSD model for its measures and components and logging them at
+ * INFO level at each row, then with
+ * DataCubeMaker.traiterLigne and its CompiledDsd into a model emptied before
+ * each row, then sent to a stream as the streaming conversion
+ * formerly did, and with the ObservationTripleWriter which the streaming
+ * conversion uses now. The stream keeps the last triple, so that the triples
+ * are really built.
+ * <p>
+ * Run from the tourisme directory with: java -jar
+ * ../tourisme-benchmarks/target/benchmarks.jar TraiterLigneBenchmark -prof gc
+ * to compare the allocation rates (gc.alloc.rate.norm, in bytes per row). The
+ * logs of the baseline go to a rolling file under target/benchmark-logs, as the
+ * logs of the former conversion went to a file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TraiterLigneBenchmark {
+	/** Logger of the baseline, at INFO level in the configuration of the benchmarks */
+	private static Logger logger = LogManager.getLogger(TraiterLigneBenchmark.class);
+
+	@Param("100000")
+	public long rows;
+
+	private List<Map<String, String>> lines;
+	private String[] observationURIs;
+	private CompiledDsd dsd;
+	private Model dsdModel;
+	private Model model;
+	private Resource dataSet;
+	private ObservationTripleWriter writer;
+	private final LastTripleStream stream = new LastTripleStream();
+	private int next = 0;
+
+	/** Keeps the last triple received */
+	private static class LastTripleStream extends StreamRDFBase {
+		private Triple last;
+
+		@Override
+		public void triple(Triple triple) {
+			last = triple;
+		}
+	}
+
+	@Setup
+	public void read() throws IOException {
+		dsd = SyntheticDataSet.dsd();
+		dsdModel = RDFDataMgr.loadModel(SyntheticDataSet.DSD_FILE);
+		lines = SyntheticDataSet.rows(rows);
+		observationURIs = new String[lines.size()];
+		for (int i = 0; i < observationURIs.length; i++) {
+			observationURIs[i] = Configuration.observationURI(SyntheticDataSet.DATA_SET_NAME,
+					dsd.observationKey(lines.get(i)));
+		}
+		model = DataCubeMaker.createDataSetModel();
+		dataSet = model.createResource(SyntheticDataSet.DATA_SET_URI, DataCubeOntology.DataSet);
+		writer = new ObservationTripleWriter(dsd, SyntheticDataSet.DATA_SET_URI);
+	}
+
+	private int nextRow() {
+		int row = next;
+		next = row + 1 == observationURIs.length ? 0 : row + 1;
+		return row;
+	}
+
+	/** Baseline: the components are looked up in the DSD model at each row */
+	@Benchmark
+	public Model traiterLigneParcoursDsd() {
+		int row = nextRow();
+		model.removeAll();
+		traiterLigneParcoursDsd(model, dataSet, observationURIs[row], lines.get(row), dsdModel);
+		return model;
+	}
+
+	@Benchmark
+	public Model traiterLigne() {
+		int row = nextRow();
+		model.removeAll();
+		DataCubeMaker.traiterLigne(model, dataSet, observationURIs[row], lines.get(row), dsd);
+		return model;
+	}
+
+	@Benchmark
+	public Triple traiterLigneStream() {
+		int row = nextRow();
+		model.removeAll();
+		DataCubeMaker.traiterLigne(model, dataSet, observationURIs[row], lines.get(row), dsd);
+		model.getGraph().find().forEachRemaining(stream::triple);
+		return stream.last;
+	}
+
+	@Benchmark
+	public Triple observationTripleWriter() {
+		int row = nextRow();
+		writer.write(observationURIs[row], lines.get(row), stream);
+		return stream.last;
+	}
+
+	/**
+	 * The conversion of a row before CompiledDsd, with its INFO logs: the measures,
+	 * attributes, dimensions and time period are found by listing the properties
+	 * of the DSD model.
+	 */
+	private static void traiterLigneParcoursDsd(Model tourismDepModel, Resource tourismDataSet,
+			String observationURI, Map<String, String> nextLine, Model modelDsd) {
+		Resource observation = tourismDepModel.createResource(observationURI, DataCubeOntology.Observation);
+		observation.addProperty(DataCubeOntology.dataSet, tourismDataSet);
+
+		NodeIterator measureIt = modelDsd.listObjectsOfProperty(DataCubeOntology.measure);
+		while (measureIt.hasNext()) {
+			RDFNode mes = measureIt.next();
+			logger.info(mes.toString());
+			logger.info(mes.asResource().getLocalName());
+			logger.info(mes.asResource().getURI());
+			logger.info(mes.asResource().getNameSpace());
+		}
+		NodeIterator attrIt = modelDsd.listObjectsOfProperty(DataCubeOntology.attribute);
+		while (attrIt.hasNext()) {
+			RDFNode att = attrIt.next();
+			String localNameUC = att.asResource().getLocalName().toUpperCase();
+			logger.info(localNameUC);
+			Resource resource = tourismDepModel
+					.createResource(Configuration.codeItemURI(localNameUC, nextLine.get(localNameUC)));
+			Property property = tourismDepModel.createProperty(Configuration.componentURI("attribute", localNameUC));
+			observation.addProperty(property, resource);
+		}
+		ResIterator dimIt = modelDsd.listResourcesWithProperty(RDF.type, DataCubeOntology.DimensionProperty);
+		while (dimIt.hasNext()) {
+			Resource dim = dimIt.next();
+			logger.info(dim.toString());
+			if (StringUtils.isNoneEmpty(dim.getLocalName())) {
+				String localNameUC = dim.getLocalName().toUpperCase();
+				logger.info(localNameUC);
+				Resource resource = tourismDepModel
+						.createResource(Configuration.codeItemURI(localNameUC, nextLine.get(localNameUC)));
+				Property property = tourismDepModel
+						.createProperty(Configuration.componentURI("dimension", localNameUC));
+				observation.addProperty(property, resource);
+			} else {
+				logger.info("timePeriodProperty");
+				Property timePeriodProperty = tourismDepModel
+						.createProperty("http://purl.org/linked-data/sdmx/2009/dimension#timePeriod");
+				observation.addProperty(timePeriodProperty,
+						tourismDepModel.createTypedLiteral(nextLine.get("TIME_PERIOD"), XSDDatatype.XSDgYear));
+			}
+		}
+		Property measureProperty = tourismDepModel.createProperty(Configuration.componentURI("mesure", "MEASURE"));
+		observation.addProperty(measureProperty,
+				tourismDepModel.createTypedLiteral(Integer.valueOf(nextLine.get("OBS_VALUE"))));
+	}
+}
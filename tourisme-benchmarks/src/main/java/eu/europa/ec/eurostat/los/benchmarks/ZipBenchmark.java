@@ -0,0 +1,143 @@
+package eu.europa.ec.eurostat.los.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.europa.ec.eurostat.los.codes.ZipWriter;
+import eu.europa.ec.eurostat.los.utils.Catalogue;
+import eu.europa.ec.eurostat.los.utils.JobScheduler;
+import eu.europa.ec.eurostat.los.utils.OutputFormat;
+
+/**
+ * Builds the archives of a run, each holding the code lists, the DSD and a
+ * synthetic data set of a number of rows: with a new ZipWriter per archive
+ * which compresses every file again, and with one ZipWriter for all the
+ * archives, which compresses the code lists once and copies their compressed
+ * entries into the following archives. The shared ZipWriter is also measured
+ * building the archives in parallel on a JobScheduler, as ZipMaker -fast does
+ * with -threads. The bytes read from the disk and the bytes of the archives are
+ * reported with the time of the run.
+ * <p>
+ * Run from the tourisme directory with: java -jar
+ * ../tourisme-benchmarks/target/benchmarks.jar ZipBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class ZipBenchmark {
+
+	/** The bundled data sets have about a thousand rows */
+	@Param({ "1000", "100000" })
+	public long rows;
+
+	/** Number of archives of the run, 6 in the catalogue */
+	@Param("6")
+	public int archives;
+
+	/** Threads of the scheduler of the parallel run */
+	@Param("4")
+	public int threads;
+
+	private List<Path> files;
+	private List<Path> codeLists;
+	private long inputBytes;
+	private final List<String> outputZips = new ArrayList<>();
+
+	/** Bytes read and written by the last run, reported by JMH next to its time */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Bytes {
+		public long bytesRead;
+		public long bytesWritten;
+
+	}
+
+	@Setup
+	public void prepare() throws IOException {
+		try (Stream<Path> rdf = Files.list(Paths.get(Catalogue.get().getOutputDirectory()))) {
+			codeLists = rdf.filter(file -> file.getFileName().toString().startsWith("cl-")).sorted()
+					.collect(Collectors.toList());
+		}
+		files = new ArrayList<>(codeLists);
+		files.add(Paths.get(SyntheticDataSet.DSD_FILE));
+		files.add(SyntheticDataSet.file(rows, OutputFormat.TURTLE).toPath());
+		for (Path file : files) {
+			inputBytes += Files.size(file);
+		}
+		for (int i = 0; i < archives; i++) {
+			outputZips.add(File.createTempFile("benchmark-", ".zip").getPath());
+		}
+	}
+
+	@TearDown
+	public void delete() {
+		outputZips.forEach(zip -> new File(zip).delete());
+	}
+
+	/** Every archive compresses all its files */
+	@Benchmark
+	public void createZipPerArchive(Bytes bytes) {
+		for (String outputZip : outputZips) {
+			new ZipWriter().createZip(files, outputZip);
+		}
+		bytes.bytesRead = inputBytes * outputZips.size();
+		bytes.bytesWritten = written();
+	}
+
+	/** The code lists are compressed for the first archive only */
+	@Benchmark
+	public void createZipSharedEntries(Bytes bytes) throws IOException {
+		ZipWriter writer = new ZipWriter();
+		for (String outputZip : outputZips) {
+			writer.createZip(files, codeLists, outputZip);
+		}
+		bytes.bytesRead = writer.getBytesRead();
+		bytes.bytesWritten = written();
+	}
+
+	/** The archives are built by the jobs of a scheduler, sharing the compressed code lists */
+	@Benchmark
+	public void createZipSharedEntriesParallel(Bytes bytes) {
+		ZipWriter writer = new ZipWriter();
+		JobScheduler scheduler = new JobScheduler(threads);
+		for (String outputZip : outputZips) {
+			scheduler.submit(outputZip, () -> writer.createZip(files, codeLists, outputZip), outputZip);
+		}
+		scheduler.runAll();
+		bytes.bytesRead = writer.getBytesRead();
+		bytes.bytesWritten = written();
+	}
+
+	private long written() {
+		long written = 0;
+		for (String outputZip : outputZips) {
+			written += new File(outputZip).length();
+		}
+		return written;
+	}
+}
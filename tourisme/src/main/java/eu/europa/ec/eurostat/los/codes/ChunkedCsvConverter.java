@@ -0,0 +1,212 @@
+package eu.europa.ec.eurostat.los.codes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import eu.europa.ec.eurostat.los.utils.DataCubeOntology;
+import eu.europa.ec.eurostat.los.utils.MappedCsvReader;
+import eu.europa.ec.eurostat.los.utils.OutputFormat;
+import eu.europa.ec.eurostat.los.utils.RunMetrics;
+
+/**
+ * The <code>ChunkedCsvConverter</code> class converts one measure of a large
+ * CSV file in parallel. The file is split after its header into line-aligned
+ * byte ranges, each range is converted by a ForkJoinPool worker and
+ * the chunks are appended to the output in file order, so the result is the
+ * same as the sequential conversion. At most two chunks per worker are
+ * submitted ahead of the one being written, so that memory is bounded by the
+ * chunk size and not by the size of the output. Fields must not contain line
+ * breaks, which is the case of the Eurostat files.
+ */
+public class ChunkedCsvConverter {
+	private static Logger logger = LogManager.getLogger(ChunkedCsvConverter.class);
+
+	public static final long DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+	/** Chunks converted or being converted ahead of the output, per worker */
+	private static final int CHUNKS_PAR_WORKER = 2;
+
+	private final long chunkSize;
+	private final ForkJoinPool pool;
+	private final OutputFormat format;
+
+	public ChunkedCsvConverter(long chunkSize, ForkJoinPool pool, OutputFormat format) {
+		this.chunkSize = chunkSize;
+		this.pool = pool;
+		this.format = format;
+	}
+
+	/** Output and statistics of the conversion of one chunk */
+	private static class Chunk {
+		byte[] rdf;
+		long bytesRead;
+		int rows;
+		int filtered;
+		long triples;
+		long nanos;
+		/** Row of the chunk whose field count differs from the header's, 0 if none */
+		long invalidRow;
+		int invalidFieldCount;
+		int headerLength;
+	}
+
+	/**
+	 * Converts the rows of a measure and writes the data set to a stream, which is
+	 * not closed.
+	 */
+	public void convertir(String csvFile, String measure, CompiledDsd dsd, String dataSetName, OutputStream out)
+			throws IOException {
+		long headerEnd = finDeLigne(csvFile, 0);
+		List<long[]> ranges = decouper(csvFile, headerEnd, chunkSize);
+		logger.info(String.format("Conversion de %s (%s) en %d chunks", csvFile, measure, ranges.size()));
+
+		// The data set resource opens the document, then the chunks follow in file order
+		StreamRDF stream = format.openStream(out, DataCubeMaker.dataSetURI(dataSetName));
+		stream.start();
+		Model model = DataCubeMaker.createDataSetModel();
+		model.getNsPrefixMap().forEach(stream::prefix);
+		model.createResource(DataCubeMaker.dataSetURI(dataSetName), DataCubeOntology.DataSet);
+		DataCubeMaker.sendToStream(model, stream);
+		stream.finish();
+
+		// Futures of the chunks submitted and not yet written, in file order
+		Deque<Future<Chunk>> futures = new ArrayDeque<>();
+		int enAvance = CHUNKS_PAR_WORKER * pool.getParallelism();
+		int soumis = 0;
+		// Rows of the chunks already written, to number the rows of the next one from the header
+		long lignes = 0;
+		try {
+			for (int i = 0; i < ranges.size(); i++) {
+				while (soumis < ranges.size() && futures.size() < enAvance) {
+					long[] range = ranges.get(soumis++);
+					futures.add(pool.submit(
+							() -> convertirChunk(csvFile, range[0], range[1], measure, dsd, dataSetName, format)));
+				}
+				Chunk chunk = futures.poll().get();
+				if (chunk.invalidRow > 0) {
+					throw new IOException(String.format("Ligne %d de %s : %d valeurs pour %d colonnes",
+							lignes + chunk.invalidRow, csvFile, chunk.invalidFieldCount, chunk.headerLength));
+				}
+				lignes += chunk.rows + chunk.filtered;
+				out.write(chunk.rdf);
+				// Chunks are parsed, built and serialized together, their time is counted as building
+				RunMetrics.counter(RunMetrics.ROWS_READ, dataSetName).add(chunk.rows + chunk.filtered);
+				RunMetrics.counter(RunMetrics.ROWS_FILTERED, dataSetName).add(chunk.filtered);
+				RunMetrics.counter(RunMetrics.TRIPLES_EMITTED, dataSetName).add(chunk.triples);
+				RunMetrics.counter(RunMetrics.BYTES_WRITTEN, dataSetName).add(chunk.rdf.length);
+				RunMetrics.timer(RunMetrics.BUILDING, dataSetName).add(chunk.nanos);
+				logger.info(String.format("Chunk %d : %d lignes, %d octets en %d ms (%.0f lignes/s)", i, chunk.rows,
+						chunk.bytesRead, chunk.nanos / 1000000, chunk.rows * 1e9 / Math.max(1, chunk.nanos)));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw new IOException("Echec de conversion d'un chunk de " + csvFile, e.getCause());
+		} finally {
+			futures.forEach(future -> future.cancel(true));
+		}
+	}
+
+	/**
+	 * Splits a file into byte ranges starting at <code>start</code>. Each range
+	 * ends just after a line break, except the last one which ends with the file.
+	 */
+	static List<long[]> decouper(String csvFile, long start, long chunkSize) throws IOException {
+		List<long[]> ranges = new ArrayList<>();
+		long length;
+		try (RandomAccessFile file = new RandomAccessFile(csvFile, "r")) {
+			length = file.length();
+		}
+		long debut = start;
+		while (debut < length) {
+			long fin = debut + chunkSize >= length ? length : finDeLigne(csvFile, debut + chunkSize);
+			ranges.add(new long[] { debut, fin });
+			debut = fin;
+		}
+		return ranges;
+	}
+
+	/** Returns the position following the first line break at or after a position */
+	private static long finDeLigne(String csvFile, long position) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(csvFile, "r")) {
+			file.seek(position);
+			int b;
+			while ((b = file.read()) != -1) {
+				if (b == '\n') {
+					return file.getFilePointer();
+				}
+			}
+			return file.length();
+		}
+	}
+
+	/**
+	 * Converts the rows of a byte range, read with MappedCsvReader like the whole
+	 * files. The rows of other measures are skipped by comparing bytes, before
+	 * their values are decoded. A row whose field count differs from the header's
+	 * stops the conversion of the chunk and is recorded in it, to be reported with
+	 * its row number in the file.
+	 */
+	private static Chunk convertirChunk(String csvFile, long start, long end, String measure, CompiledDsd dsd,
+			String dataSetName, OutputFormat format) throws IOException {
+		long debut = System.nanoTime();
+		Chunk chunk = new Chunk();
+		chunk.bytesRead = end - start;
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		StreamRDF stream = format.openStream(buffer, DataCubeMaker.dataSetURI(dataSetName));
+		stream.start();
+		// Prefixes are declared again in each chunk, which all the formats accept
+		DataCubeMaker.createDataSetModel().getNsPrefixMap().forEach(stream::prefix);
+		ObservationTripleWriter writer = new ObservationTripleWriter(dsd, DataCubeMaker.dataSetURI(dataSetName));
+
+		try (MappedCsvReader reader = MappedCsvReader.open(csvFile, start, end)) {
+			String[] header = reader.getHeader();
+			int measureColumn = reader.column("MEASURE");
+			byte[] measureBytes = measure.getBytes(StandardCharsets.UTF_8);
+			Map<String, String> nextLine = new HashMap<>();
+			while (reader.next()) {
+				if (reader.getFieldCount() != header.length) {
+					chunk.invalidRow = reader.getRowNumber();
+					chunk.invalidFieldCount = reader.getFieldCount();
+					chunk.headerLength = header.length;
+					return chunk;
+				}
+				if (!reader.equalsBytes(measureColumn, measureBytes)) {
+					chunk.filtered++;
+					continue;
+				}
+				for (int column = 0; column < header.length; column++) {
+					nextLine.put(header[column], reader.getInterned(column));
+				}
+				String observationURI = Configuration.observationURI(dataSetName,
+						DataCubeMaker.observationKey(dsd, nextLine));
+				writer.write(observationURI, nextLine, stream);
+				chunk.rows++;
+			}
+		}
+		stream.finish();
+		chunk.triples = writer.getCount();
+		chunk.rdf = buffer.toByteArray();
+		chunk.nanos = System.nanoTime() - debut;
+		return chunk;
+	}
+}
@@ -0,0 +1,139 @@
+package eu.europa.ec.eurostat.los.codes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.ResIterator;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.vocabulary.SKOS;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import eu.europa.ec.eurostat.los.utils.OutputFormat;
+
+/**
+ * The <code>CodeHierarchy</code> class indexes the hierarchy of a code list
+ * read from a generated cl-*.ttl file. Codes are numbered and the hierarchy is
+ * kept as an int array of parent pointers, -1 for the top codes, so walking up
+ * from a code only reads arrays.
+ */
+public class CodeHierarchy {
+	private static Logger logger = LogManager.getLogger(CodeHierarchy.class);
+
+	private final String[] codes;
+	private final Map<String, Integer> indexes = new HashMap<>();
+	private final int[] parents;
+	private final int[] levels;
+	private final boolean[] leaves;
+
+	private CodeHierarchy(List<String> codes, Map<String, String> parentCodes) {
+		this.codes = codes.toArray(new String[codes.size()]);
+		for (int i = 0; i < this.codes.length; i++) {
+			indexes.put(this.codes[i], i);
+		}
+		parents = new int[this.codes.length];
+		for (int i = 0; i < this.codes.length; i++) {
+			parents[i] = indexOf(parentCodes.get(this.codes[i]));
+		}
+		levels = new int[this.codes.length];
+		leaves = new boolean[this.codes.length];
+		Arrays.fill(leaves, true);
+		for (int i = 0; i < this.codes.length; i++) {
+			for (int parent = parents[i]; parent >= 0; parent = parents[parent]) {
+				levels[i]++;
+			}
+			if (parents[i] >= 0) {
+				leaves[parents[i]] = false;
+			}
+		}
+	}
+
+	/**
+	 * Reads the hierarchy of a code list from its skos:broader properties. The
+	 * broader code is taken from the end of the URI, which the generated files
+	 * write as a plain literal.
+	 */
+	public static CodeHierarchy fromBroader(String clFile) {
+		Model model = OutputFormat.read(clFile);
+		List<String> codes = new ArrayList<>();
+		Map<String, String> parentCodes = new HashMap<>();
+		ResIterator concepts = model.listSubjectsWithProperty(SKOS.notation);
+		while (concepts.hasNext()) {
+			Resource concept = concepts.next();
+			if (!concept.hasProperty(SKOS.inScheme)) {
+				continue;
+			}
+			String code = concept.getProperty(SKOS.notation).getString();
+			codes.add(code);
+			Statement broader = concept.getProperty(SKOS.broader);
+			if (broader != null) {
+				RDFNode parent = broader.getObject();
+				String parentURI = parent.isLiteral() ? parent.asLiteral().getString() : parent.asResource().getURI();
+				parentCodes.put(code, StringUtils.substringAfterLast(parentURI, "/"));
+			}
+		}
+		logger.info(String.format("Hierarchie de %s : %d codes, %d avec un parent", clFile, codes.size(),
+				parentCodes.size()));
+		return new CodeHierarchy(codes, parentCodes);
+	}
+
+	/**
+	 * Reads the NUTS codes of a code list, whose levels are given by the length of
+	 * the codes: the parent of FR10 is FR1, whose parent is the country FR.
+	 */
+	public static CodeHierarchy fromNuts(String clFile) {
+		Model model = OutputFormat.read(clFile);
+		Set<String> codes = new TreeSet<>();
+		model.listObjectsOfProperty(SKOS.notation).forEachRemaining(notation -> {
+			String code = notation.asLiteral().getString();
+			if (!code.equalsIgnoreCase("nuts")) {
+				codes.add(code);
+			}
+		});
+		Map<String, String> parentCodes = new HashMap<>();
+		for (String code : codes) {
+			if (code.length() > 2 && codes.contains(code.substring(0, code.length() - 1))) {
+				parentCodes.put(code, code.substring(0, code.length() - 1));
+			}
+		}
+		logger.info(String.format("Hierarchie NUTS de %s : %d codes", clFile, codes.size()));
+		return new CodeHierarchy(new ArrayList<>(codes), parentCodes);
+	}
+
+	public int size() {
+		return codes.length;
+	}
+
+	/** Returns the index of a code, -1 if it is not in the code list */
+	public int indexOf(String code) {
+		Integer index = code == null ? null : indexes.get(code);
+		return index == null ? -1 : index;
+	}
+
+	public String code(int index) {
+		return codes[index];
+	}
+
+	/** Returns the index of the parent of a code, -1 for a top code */
+	public int parent(int index) {
+		return parents[index];
+	}
+
+	/** Returns the depth of a code, 0 for the top codes */
+	public int level(int index) {
+		return levels[index];
+	}
+
+	public boolean isLeaf(int index) {
+		return leaves[index];
+	}
+}
@@ -0,0 +1,86 @@
+package eu.europa.ec.eurostat.los.codes;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The <code>CodeItemCache</code> class keeps the code item resources of one
+ * coded column (dimension or attribute), keyed by the raw code read in the CSV
+ * file. Caches are shared by all the data sets of a run, so each distinct code
+ * item URI is built only once.
+ */
+public class CodeItemCache {
+	private static Logger logger = LogManager.getLogger(CodeItemCache.class);
+
+	private static final Map<String, CodeItemCache> CACHES = new ConcurrentHashMap<>();
+
+	private final String column;
+	private final String prefix;
+	private final Map<String, Resource> items = new ConcurrentHashMap<>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	private CodeItemCache(String column) {
+		this.column = column;
+		this.prefix = Configuration.codeItemURI(column, "");
+	}
+
+	/**
+	 * Returns the cache of a coded column, creating it if needed.
+	 *
+	 * @param column The name of the column in upper case, for example NUTS.
+	 */
+	public static CodeItemCache forColumn(String column) {
+		return CACHES.computeIfAbsent(column, CodeItemCache::new);
+	}
+
+	/**
+	 * Returns the code item resource for a raw code. A missing value gives the
+	 * same "null" item as Configuration.codeItemURI.
+	 */
+	public Resource item(String code) {
+		String key = String.valueOf(code);
+		Resource item = items.get(key);
+		if (item != null) {
+			hits.increment();
+			return item;
+		}
+		misses.increment();
+		return items.computeIfAbsent(key, c -> ResourceFactory.createResource(prefix + c));
+	}
+
+	public String getColumn() {
+		return column;
+	}
+
+	public String getPrefix() {
+		return prefix;
+	}
+
+	public int size() {
+		return items.size();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/** Logs the size and hit/miss counters of every cache of the run */
+	public static void logStatistics() {
+		for (CodeItemCache cache : new TreeMap<>(CACHES).values()) {
+			logger.info(String.format("Cache %s : %d items, %d hits, %d misses", cache.column, cache.size(),
+					cache.getHits(), cache.getMisses()));
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package eu.europa.ec.eurostat.los.codes;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import eu.europa.ec.eurostat.los.utils.MappedCsvReader;
+import eu.europa.ec.eurostat.los.utils.MetadataWorkbook;
+import eu.europa.ec.eurostat.los.utils.MetadataWorkbook.MetadataRow;
+import eu.europa.ec.eurostat.los.utils.MetadataWorkbook.MetadataSheet;
+
+/**
+ * The <code>CodedValueScan</code> class collects the distinct values of every
+ * coded column of the observation files, reading each file once. The values
+ * are counted so that the validation report against the Excel code lists can
+ * tell how many rows use a missing code.
+ */
+public class CodedValueScan {
+	private static Logger logger = LogManager.getLogger(CodedValueScan.class);
+
+	/** Columns which do not hold codes */
+	private static final List<String> UNCODED_COLUMNS = Arrays.asList(CompiledDsd.OBS_VALUE_COLUMN,
+			CompiledDsd.TIME_PERIOD_COLUMN);
+
+	/** Number of rows by value, by column */
+	private final Map<String, Map<String, Long>> values = new TreeMap<>();
+
+	private CodedValueScan() {
+	}
+
+	/** Reads the coded columns of the files in a single pass over each of them */
+	public static CodedValueScan scan(String... csvFiles) throws IOException {
+		long debut = System.currentTimeMillis();
+		CodedValueScan scan = new CodedValueScan();
+		for (String csvFile : csvFiles) {
+			scan.read(csvFile);
+		}
+		logger.info(String.format("Valeurs codees de %d fichiers lues en %d ms : %s", csvFiles.length,
+				System.currentTimeMillis() - debut, scan.getColumns()));
+		return scan;
+	}
+
+	private void read(String csvFile) throws IOException {
+		try (MappedCsvReader reader = MappedCsvReader.open(csvFile)) {
+			String[] header = reader.getHeader();
+			// Values of each column by index, null for the uncoded columns
+			List<Map<String, Long>> columnValues = new ArrayList<>(header.length);
+			for (int column = 0; column < header.length; column++) {
+				if (!header[column].isEmpty() && !UNCODED_COLUMNS.contains(header[column])) {
+					columnValues.add(values.computeIfAbsent(header[column], name -> new TreeMap<>()));
+				} else {
+					columnValues.add(null);
+				}
+			}
+			while (reader.next()) {
+				for (int column = 0; column < header.length; column++) {
+					Map<String, Long> counts = columnValues.get(column);
+					if (counts != null && !reader.isEmpty(column)) {
+						counts.merge(reader.getInterned(column), 1L, Long::sum);
+					}
+				}
+			}
+		}
+	}
+
+	/** Returns the coded columns found in at least one file */
+	public Set<String> getColumns() {
+		return values.keySet();
+	}
+
+	/** Returns the distinct values of a column, empty if no file has it */
+	public Set<String> values(String column) {
+		return values.getOrDefault(column, Collections.emptyMap()).keySet();
+	}
+
+	/**
+	 * Writes the codes of the files which are missing from the code list of their
+	 * column in the workbook, as a tab-separated file. Columns without a sheet of
+	 * codes, like NUTS whose code list is built from the files, are not checked.
+	 *
+	 * @return The number of missing codes.
+	 */
+	public int writeReport(MetadataWorkbook workbook, String reportFile) throws IOException {
+		int manquants = 0;
+		try (PrintWriter report = new PrintWriter(
+				Files.newBufferedWriter(Paths.get(reportFile), StandardCharsets.UTF_8))) {
+			report.println("COLONNE\tCODE\tLIGNES");
+			for (Map.Entry<String, Map<String, Long>> column : values.entrySet()) {
+				MetadataSheet sheet = workbook.getSheet(column.getKey());
+				Set<String> codes = sheet == null ? Collections.emptySet() : sheetCodes(sheet);
+				if (codes.isEmpty()) {
+					logger.info(String.format("Pas de liste de codes Excel pour %s, %d valeurs non verifiees",
+							column.getKey(), column.getValue().size()));
+					continue;
+				}
+				for (Map.Entry<String, Long> value : column.getValue().entrySet()) {
+					if (!codes.contains(value.getKey())) {
+						manquants++;
+						report.println(column.getKey() + "\t" + value.getKey() + "\t" + value.getValue());
+						logger.warn(String.format("Code %s de %s absent de la liste Excel (%d lignes)", value.getKey(),
+								column.getKey(), value.getValue()));
+					}
+				}
+			}
+		}
+		logger.info(String.format("Rapport %s : %d codes absents des listes Excel", reportFile, manquants));
+		return manquants;
+	}
+
+	/**
+	 * Returns the codes of a code list sheet, read as createMultipleLevelsConceptScheme
+	 * does: the first non-empty cell of an even column on each row after the header.
+	 */
+	private static Set<String> sheetCodes(MetadataSheet sheet) {
+		Set<String> codes = new TreeSet<>();
+		Iterator<MetadataRow> rowIterator = sheet.getRows().iterator();
+		if (rowIterator.hasNext()) {
+			rowIterator.next();
+		}
+		while (rowIterator.hasNext()) {
+			MetadataRow row = rowIterator.next();
+			for (int cell = 0; cell < row.getLastCellNum(); cell += 2) {
+				String code = row.getText(cell).trim();
+				if (!code.isEmpty()) {
+					codes.add(code);
+					break;
+				}
+			}
+		}
+		return codes;
+	}
+}
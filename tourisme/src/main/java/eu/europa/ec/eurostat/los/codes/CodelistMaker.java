@@ -1,25 +1,19 @@
 package eu.europa.ec.eurostat.los.codes;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.text.Normalizer;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.ResIterator;
 import org.apache.jena.rdf.model.Resource;
-import org.apache.jena.riot.Lang;
-import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.sparql.vocabulary.FOAF;
 import org.apache.jena.vocabulary.OWL;
 import org.apache.jena.vocabulary.RDF;
@@ -27,62 +21,79 @@ import org.apache.jena.vocabulary.RDFS;
 import org.apache.jena.vocabulary.SKOS;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
 
-import com.opencsv.CSVReader;
+import eu.europa.ec.eurostat.los.utils.Catalogue;
+import eu.europa.ec.eurostat.los.utils.GeneratedModels;
+import eu.europa.ec.eurostat.los.utils.MetadataWorkbook;
+import eu.europa.ec.eurostat.los.utils.MetadataWorkbook.MetadataRow;
+import eu.europa.ec.eurostat.los.utils.MetadataWorkbook.MetadataSheet;
+import eu.europa.ec.eurostat.los.utils.OutputFormat;
+import eu.europa.ec.eurostat.los.utils.Tdb2Sink;
 
 public class CodelistMaker {
 	private static Logger logger = LogManager.getLogger(CodelistMaker.class);
 	private static final String NUTS = "nuts";
 
-	private static final String[] NUTS_CSV = { "src/main/resources/data/tourism-nuts-nace-r2-fr.csv",
-												"src/main/resources/data/tourism-degurba-fr.csv",
-												"src/main/resources/data/tourism-partner-fr.csv",
-												"src/main/resources/data/tourism-terrtypo-fr.csv"
-											};
+	private static final String CODE_LIST_PREFIX = "cl-";
+	private static final String REPORT_NAME = "rapport-codes.tsv";
 
-	private static final String RDF_DIRECTORY = "src/main/resources/rdf/cl-";
-
-	private static Workbook wb = null;
-
-	private final static String EXCEL_FILE_NAME = "src/main/resources/data/tourism-fr-dsd-2.xls";
+	private static MetadataWorkbook wb = null;
+	private static OutputFormat format = OutputFormat.TURTLE;
+	private static Tdb2Sink tdb2 = null;
 
 	private final static String BASE_URI_NUTS = "http://ec.europa.eu/nuts/";
 	private final static String BASE_URI_NACE_R2 = "http://id.insee.fr/codes/nafr2/groupes/";
 
 	public static void main(String[] args) throws IOException {
-		wb = new HSSFWorkbook(new FileInputStream(EXCEL_FILE_NAME));
+		Tdb2Sink sink = Tdb2Sink.fromArgs(args);
+		try {
+			generer(args, sink);
+		} finally {
+			if (sink != null) {
+				sink.close();
+			}
+		}
+	}
+
+	/**
+	 * Generates the code lists, into the TDB2 database given by the caller if it is
+	 * not null, which stays open.
+	 */
+	public static void generer(String[] args, Tdb2Sink sink) throws IOException {
+		Catalogue catalogue = Catalogue.fromArgs(args);
+		wb = MetadataWorkbook.load(catalogue.getMetadataFile());
+		format = OutputFormat.fromArgs(args);
+		tdb2 = sink;
+		// The coded values of all the observation files give the NUTS code list and are checked against the Excel lists
+		List<String> csvFiles = catalogue.getAllCsvFiles();
+		CodedValueScan scan = CodedValueScan.scan(csvFiles.toArray(new String[csvFiles.size()]));
 
 		generateDsdCodeListForPartner();
 		generateDsdCodeListForNaceR2();
 
-		Iterator<Sheet> sheetsIterator = wb.iterator();
-		while (sheetsIterator.hasNext()) {
-			Sheet sheet = (Sheet) sheetsIterator.next();
-			String clTag = normalize(sheet.getSheetName().trim().toLowerCase());
+		for (MetadataSheet sheet : wb.getSheets()) {
+			String clTag = normalize(sheet.getName().trim().toLowerCase());
 			if (!StringUtils.containsIgnoreCase(clTag, "Scope") && !StringUtils.containsIgnoreCase(clTag, "DSD")
 					&& sheet.getRow(0).getLastCellNum() == 2) {
-				logger.info(String.format("import code list normal (feuille %s - nb cell %d)", sheet.getSheetName(),
+				logger.info(String.format("import code list normal (feuille %s - nb cell %d)", sheet.getName(),
 						sheet.getRow(0).getLastCellNum()));
 				Model codelistModel = createMultipleLevelsConceptScheme(clTag, sheet, 1);
-				RDFDataMgr.write(new FileOutputStream(RDF_DIRECTORY + clTag + ".ttl"), codelistModel, Lang.TURTLE);
+				writeCodeList(clTag, codelistModel);
 			}
 		}
-		importNuts();
+		importNuts(scan);
+		scan.writeReport(wb, catalogue.outputFile(REPORT_NAME));
 	}
 
-	private static void generateDsdCodeListForPartner() throws FileNotFoundException {
-		Sheet partnerSheet = wb.getSheet("PARTNER");
+	private static void generateDsdCodeListForPartner() throws IOException {
+		MetadataSheet partnerSheet = wb.getSheet("PARTNER");
 		String clTag = "partner";
 		Model codelistModel = createMultipleLevelsConceptScheme(clTag, partnerSheet, 3);
-		RDFDataMgr.write(new FileOutputStream(RDF_DIRECTORY + clTag + ".ttl"), codelistModel, Lang.TURTLE);
+		writeCodeList(clTag, codelistModel);
 	}
 
-	private static void generateDsdCodeListForNaceR2() throws FileNotFoundException {
-		Sheet sheet = wb.getSheet("NACE_R2");
+	private static void generateDsdCodeListForNaceR2() throws IOException {
+		MetadataSheet sheet = wb.getSheet("NACE_R2");
 		String clTag = "nace_r2";
 		Model codelistModel = createMultipleLevelsConceptScheme(clTag, sheet, 2);
 		// Compl�ments
@@ -94,30 +105,29 @@ public class CodelistMaker {
 			item.addProperty(FOAF.focus, BASE_URI_NACE_R2 + groupe.toLowerCase());
 		}
 
-		RDFDataMgr.write(new FileOutputStream(RDF_DIRECTORY + clTag + ".ttl"), codelistModel, Lang.TURTLE);
+		writeCodeList(clTag, codelistModel);
 	}
 
-	private static void importNuts() throws FileNotFoundException {
+	private static void importNuts(CodedValueScan scan) throws IOException {
 		logger.info("importNuts");
-		Set<String> nuts = new HashSet<>();
-		for (String nutFilename : NUTS_CSV) {
-			nuts.addAll(readNutsFromFile(nutFilename));
-		}
-		Model codelistModel = createNutsConceptScheme(nuts);
-		RDFDataMgr.write(new FileOutputStream(RDF_DIRECTORY + "nuts.ttl"), codelistModel, Lang.TURTLE);
+		Model codelistModel = createNutsConceptScheme(scan.values("NUTS"));
+		writeCodeList(NUTS, codelistModel);
 
 	}
 
-	private static Set<String> readNutsFromFile(String nomFichier) {
-		Set<String> nuts = new HashSet<>();
-		try (FileReader fileReader = new FileReader(nomFichier)) {
-			CSVReader csvReader = new CSVReader(fileReader);
-			nuts = csvReader.readAll().stream().skip(1).map(line -> line[2]).collect(Collectors.toSet());
-			csvReader.close();
-		} catch (IOException e) {
-			logger.error(e);
+	/**
+	 * Writes a code list in the format of the run, in the named graph of its scheme
+	 * for N-Quads, or loads it into that graph of the TDB2 database.
+	 */
+	private static void writeCodeList(String clTag, Model codelistModel) throws IOException {
+		if (tdb2 != null) {
+			tdb2.load(Configuration.CODES_BASE_URI + clTag, codelistModel);
+			return;
+		}
+		try (OutputStream out = new FileOutputStream(format.fileName(Catalogue.get().outputFile(CODE_LIST_PREFIX + clTag)))) {
+			format.write(out, codelistModel, Configuration.CODES_BASE_URI + clTag);
 		}
-		return nuts;
+		GeneratedModels.register(format.fileName(Catalogue.get().outputFile(CODE_LIST_PREFIX + clTag)), codelistModel);
 	}
 
 	private static Model createNutsConceptScheme(Set<String> nutsValues) {
@@ -160,7 +170,7 @@ public class CodelistMaker {
 		item.addProperty(FOAF.focus, BASE_URI_NUTS + itemCode.toLowerCase());
 	}
 
-	public static Model createMultipleLevelsConceptScheme(String clTag, Sheet clSheet, int numberOfLevels) {
+	public static Model createMultipleLevelsConceptScheme(String clTag, MetadataSheet clSheet, int numberOfLevels) {
 
 		Model clModel = ModelFactory.createDefaultModel();
 		clModel.setNsPrefix("rdfs", RDFS.getURI());
@@ -190,26 +200,26 @@ public class CodelistMaker {
 		concept.addProperty(RDFS.seeAlso, scheme);
 
 		// Iterate through lines (skipping the first one) to add the codes
-		Iterator<Row> rowIterator = clSheet.rowIterator();
+		Iterator<MetadataRow> rowIterator = clSheet.getRows().iterator();
 		rowIterator.next();
 		List<String> parentUriByLevel = new ArrayList<>(numberOfLevels);
 		List<Resource> itemParentByLevel = new ArrayList<>(numberOfLevels);
 
 		while (rowIterator.hasNext()) {
-			Row currentRow = rowIterator.next();
+			MetadataRow currentRow = rowIterator.next();
 
 			int level = 0;
-			while (currentRow.getCell(level * 2) == null || currentRow.getCell(level * 2).toString().trim().isEmpty()) {
+			while (currentRow.getCell(level * 2) == null || currentRow.getCell(level * 2).trim().isEmpty()) {
 				level++;
 			}
 
-			String itemCode = currentRow.getCell(level * 2).toString().trim();
+			String itemCode = currentRow.getCell(level * 2).trim();
 			String currentUri = clURI + "/" + itemCode;
 			Resource newResource = clModel.createResource(currentUri, concept);
 			newResource.addProperty(RDF.type, SKOS.Concept);
 			newResource.addProperty(SKOS.notation, itemCode);
 			if (currentRow.getCell(level * 2 + 1) != null) {
-				String itemName = currentRow.getCell(level * 2 + 1).toString().trim();
+				String itemName = currentRow.getCell(level * 2 + 1).trim();
 				newResource.addProperty(SKOS.prefLabel, clModel.createLiteral(itemName, "en"));
 			}
 			newResource.addProperty(SKOS.inScheme, scheme);
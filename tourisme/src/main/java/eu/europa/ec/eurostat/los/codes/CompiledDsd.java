@@ -0,0 +1,162 @@
+package eu.europa.ec.eurostat.los.codes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.NodeIterator;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.ResIterator;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import eu.europa.ec.eurostat.los.utils.DataCubeOntology;
+import eu.europa.ec.eurostat.los.utils.OutputFormat;
+
+/**
+ * The <code>CompiledDsd</code> class holds the components of a data structure
+ * definition in the form needed to convert CSV rows into observations: for each
+ * dimension and attribute, the CSV column, the Jena property and the cache of
+ * its code list items. It is built once per DSD file, so that the conversion of
+ * a row does not need to query the DSD model.
+ */
+public class CompiledDsd {
+	private static Logger logger = LogManager.getLogger(CompiledDsd.class);
+
+	public static final String TIME_PERIOD_COLUMN = "TIME_PERIOD";
+	public static final String OBS_VALUE_COLUMN = "OBS_VALUE";
+
+	private static final String TIME_PERIOD_URI = "http://purl.org/linked-data/sdmx/2009/dimension#timePeriod";
+
+	/** Coded dimensions, ordered by column name */
+	final String[] dimensionColumns;
+	final Property[] dimensionProperties;
+	final CodeItemCache[] dimensionItems;
+
+	/** Coded attributes, ordered by column name */
+	final String[] attributeColumns;
+	final Property[] attributeProperties;
+	final CodeItemCache[] attributeItems;
+
+	/** Time dimension, null if the DSD has none */
+	final Property timePeriodProperty;
+
+	/** Property of the observation value (the generated data sets use a generic measure property) */
+	final Property measureProperty;
+
+	/** Measures declared in the DSD */
+	final List<Resource> measures;
+
+	private CompiledDsd(TreeSet<String> dimensions, TreeSet<String> attributes, boolean timePeriod,
+			List<Resource> measures) {
+		dimensionColumns = dimensions.toArray(new String[dimensions.size()]);
+		dimensionProperties = new Property[dimensionColumns.length];
+		dimensionItems = new CodeItemCache[dimensionColumns.length];
+		for (int i = 0; i < dimensionColumns.length; i++) {
+			dimensionProperties[i] = ResourceFactory
+					.createProperty(Configuration.componentURI("dimension", dimensionColumns[i]));
+			dimensionItems[i] = CodeItemCache.forColumn(dimensionColumns[i]);
+		}
+		attributeColumns = attributes.toArray(new String[attributes.size()]);
+		attributeProperties = new Property[attributeColumns.length];
+		attributeItems = new CodeItemCache[attributeColumns.length];
+		for (int i = 0; i < attributeColumns.length; i++) {
+			attributeProperties[i] = ResourceFactory
+					.createProperty(Configuration.componentURI("attribute", attributeColumns[i]));
+			attributeItems[i] = CodeItemCache.forColumn(attributeColumns[i]);
+		}
+		timePeriodProperty = timePeriod ? ResourceFactory.createProperty(TIME_PERIOD_URI) : null;
+		measureProperty = ResourceFactory.createProperty(Configuration.componentURI("mesure", "MEASURE"));
+		this.measures = measures;
+	}
+
+	/**
+	 * Reads and compiles a DSD file.
+	 *
+	 * @param dsdFile The file of the DSD, in any of the output formats.
+	 */
+	public static CompiledDsd read(String dsdFile) {
+		return compile(OutputFormat.read(dsdFile));
+	}
+
+	/**
+	 * Compiles the DSD contained in a Jena model. The time dimension is the
+	 * dimension property without URI.
+	 */
+	public static CompiledDsd compile(Model modelDsd) {
+		List<Resource> measures = new ArrayList<>();
+		NodeIterator measureIt = modelDsd.listObjectsOfProperty(DataCubeOntology.measure);
+		while (measureIt.hasNext()) {
+			measures.add(measureIt.next().asResource());
+		}
+		TreeSet<String> attributes = new TreeSet<>();
+		NodeIterator attrIt = modelDsd.listObjectsOfProperty(DataCubeOntology.attribute);
+		while (attrIt.hasNext()) {
+			attributes.add(attrIt.next().asResource().getLocalName().toUpperCase());
+		}
+		TreeSet<String> dimensions = new TreeSet<>();
+		boolean timePeriod = false;
+		ResIterator dimIt = modelDsd.listResourcesWithProperty(RDF.type, DataCubeOntology.DimensionProperty);
+		while (dimIt.hasNext()) {
+			Resource dim = dimIt.next();
+			if (StringUtils.isNoneEmpty(dim.getLocalName())) {
+				dimensions.add(dim.getLocalName().toUpperCase());
+			} else {
+				timePeriod = true;
+			}
+		}
+		logger.info(String.format("DSD compilee : dimensions %s, attributs %s, mesures %s, periode %s", dimensions,
+				attributes, measures, timePeriod));
+		return new CompiledDsd(dimensions, attributes, timePeriod, measures);
+	}
+
+	/**
+	 * Returns the key of the observation of a CSV row: its dimension values, in
+	 * column order, followed by its time period and separated by dots as in SDMX
+	 * series keys.
+	 */
+	public String observationKey(Map<String, String> nextLine) {
+		StringBuilder key = new StringBuilder();
+		for (int i = 0; i < dimensionColumns.length; i++) {
+			if (i > 0) {
+				key.append('.');
+			}
+			key.append(nextLine.get(dimensionColumns[i]));
+		}
+		if (timePeriodProperty != null) {
+			key.append('.').append(nextLine.get(TIME_PERIOD_COLUMN));
+		}
+		return key.toString();
+	}
+
+	/** Returns what an observation carries besides its key: its value and its attributes */
+	public String observationFingerprint(Map<String, String> nextLine) {
+		StringBuilder fingerprint = new StringBuilder(nextLine.get(OBS_VALUE_COLUMN));
+		for (int i = 0; i < attributeColumns.length; i++) {
+			fingerprint.append('|').append(nextLine.get(attributeColumns[i]));
+		}
+		return fingerprint.toString();
+	}
+
+	public String[] getDimensionColumns() {
+		return dimensionColumns.clone();
+	}
+
+	public String[] getAttributeColumns() {
+		return attributeColumns.clone();
+	}
+
+	public boolean hasTimePeriod() {
+		return timePeriodProperty != null;
+	}
+
+	public List<Resource> getMeasures() {
+		return measures;
+	}
+}
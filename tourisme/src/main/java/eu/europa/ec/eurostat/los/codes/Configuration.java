@@ -1,5 +1,9 @@
 package eu.europa.ec.eurostat.los.codes;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 public class Configuration {
 
 	public final static String BASE_URI = "http://id.linked-open-statistics.org/";
@@ -15,7 +19,22 @@ public class Configuration {
 		return  BASE_URI + "codes/" + conceptCode.toLowerCase() + "/" + itemCode;
 	}
 	
-	public static String observationURI(String params) {
-		return BASE_URI + "observation/" + params;	
+	/** Observations are identified within their data set by the key made of their dimension values */
+	public static String observationURI(String dataSetName, String observationKey) {
+		return BASE_URI + "observation/" + dataSetName + "/" + observationKey;
+	}
+
+	/** Compact form of an observation key: the first 64 bits of its SHA-1, in hexadecimal */
+	public static String compactKey(String observationKey) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(observationKey.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder(16);
+			for (int i = 0; i < 8; i++) {
+				hex.append(String.format("%02x", digest[i]));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
 	}
 }
@@ -0,0 +1,378 @@
+package eu.europa.ec.eurostat.los.codes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.atlas.json.JsonArray;
+import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.graph.compose.MultiUnion;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QueryParseException;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import eu.europa.ec.eurostat.los.utils.Catalogue;
+import eu.europa.ec.eurostat.los.utils.CompressedOutput;
+import eu.europa.ec.eurostat.los.utils.DataCubeOntology;
+import eu.europa.ec.eurostat.los.utils.LatencyRecorder;
+import eu.europa.ec.eurostat.los.utils.OutputFormat;
+
+/**
+ * The <code>CubeQueryService</code> class serves SPARQL queries over the
+ * generated data sets on localhost, with the Fuseki protocol: GET or POST on
+ * /sparql with a query parameter, results in SPARQL JSON. Each data set is a
+ * named graph and the default graph is their union.
+ * <p>
+ * Results are cached by normalized query in a size-bounded LRU cache, which is
+ * emptied when a data set file changes. The slices of each data set, the sums
+ * of its values by one dimension for a year, are derived from its DSD and
+ * computed at load time. They are not evicted, but hold one row per code and
+ * not the observations; /slices lists their queries. /stats gives the latency
+ * percentiles of the cached and uncached queries.
+ */
+public class CubeQueryService {
+	private static Logger logger = LogManager.getLogger(CubeQueryService.class);
+
+	/** Options of main: port (3030 like Fuseki) and maximal number of cached results */
+	public static final String OPTION_PORT = "-port=";
+	public static final String OPTION_CACHE_SIZE = "-cache-size=";
+
+	private static final int DEFAULT_PORT = 3030;
+	private static final int DEFAULT_CACHE_SIZE = 256;
+
+	/** Minimal interval between two checks of the data set files */
+	private static final long RELOAD_CHECK_MILLIS = 1000;
+
+	private static final String DATA_SET_PREFIX = "ds-tourism-";
+	private static final String RESULTS_JSON = "application/sparql-results+json";
+
+	private final Map<String, byte[]> cache;
+	private final Map<String, byte[]> slices = new ConcurrentHashMap<>();
+	private final LatencyRecorder cachedLatencies = new LatencyRecorder();
+	private final LatencyRecorder uncachedLatencies = new LatencyRecorder();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	private volatile Dataset dataset;
+	private Map<String, Long> loadedFiles = new TreeMap<>();
+	private long generation = 0;
+	private long lastCheck = 0;
+
+	private CubeQueryService(int cacheSize) {
+		cache = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	public static void main(String[] args) throws IOException {
+		Catalogue.fromArgs(args);
+		int port = DEFAULT_PORT;
+		int cacheSize = DEFAULT_CACHE_SIZE;
+		for (String arg : args) {
+			if (arg.startsWith(OPTION_PORT)) {
+				port = Integer.parseInt(arg.substring(OPTION_PORT.length()));
+			} else if (arg.startsWith(OPTION_CACHE_SIZE)) {
+				cacheSize = Integer.parseInt(arg.substring(OPTION_CACHE_SIZE.length()));
+			}
+		}
+		CubeQueryService service = new CubeQueryService(cacheSize);
+		service.load();
+
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/sparql", service::handleQuery);
+		server.createContext("/slices", service::handleSlices);
+		server.createContext("/stats", service::handleStats);
+		server.setExecutor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+		server.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(service::logStatistics));
+		logger.info(String.format("Service de requetes sur http://localhost:%d/sparql, cache de %d resultats", port,
+				cacheSize));
+	}
+
+	/** Loads the data set files into a new dataset, then empties the cache and computes the slices again */
+	private synchronized void load() throws IOException {
+		long debut = System.currentTimeMillis();
+		Map<String, Long> files = dataSetFiles();
+		Dataset loaded = DatasetFactory.create();
+		MultiUnion union = new MultiUnion();
+		for (String file : files.keySet()) {
+			Model model = OutputFormat.read(file);
+			loaded.addNamedModel(DataCubeMaker.dataSetURI(dataSetName(file)), model);
+			union.addGraph(model.getGraph());
+		}
+		loaded.setDefaultModel(ModelFactory.createModelForGraph(union));
+		dataset = loaded;
+		loadedFiles = files;
+		synchronized (cache) {
+			generation++;
+			cache.clear();
+		}
+		slices.clear();
+		logger.info(String.format("%d data sets charges en %d ms", files.size(), System.currentTimeMillis() - debut));
+		materializeSlices();
+	}
+
+	/** Reloads the data sets if one of their files was added, removed or written since the last load */
+	private synchronized void reloadIfChanged() throws IOException {
+		if (System.currentTimeMillis() - lastCheck < RELOAD_CHECK_MILLIS) {
+			return;
+		}
+		lastCheck = System.currentTimeMillis();
+		if (!dataSetFiles().equals(loadedFiles)) {
+			logger.info("Data sets regeneres, rechargement et invalidation du cache");
+			load();
+		}
+	}
+
+	/**
+	 * Returns the data set files with their modification dates. The gzipped files
+	 * are read as they are, but not the zip archives.
+	 */
+	private static Map<String, Long> dataSetFiles() {
+		Map<String, Long> files = new TreeMap<>();
+		File[] candidates = new File(Catalogue.get().getOutputDirectory()).listFiles();
+		if (candidates != null) {
+			for (File file : candidates) {
+				String name = file.getName();
+				if (name.startsWith(DATA_SET_PREFIX) && !CompressedOutput.isZipEntry(file)
+						&& OutputFormat.isRdfFile(CompressedOutput.uncompressedName(name))) {
+					files.put(file.getPath(), file.lastModified());
+				}
+			}
+		}
+		return files;
+	}
+
+	private static String dataSetName(String file) {
+		String name = CompressedOutput.uncompressedName(new File(file).getName());
+		return StringUtils.substringBeforeLast(name.substring(DATA_SET_PREFIX.length()), ".");
+	}
+
+	/**
+	 * Computes, for each data set having a DSD, the sums of its values by each of
+	 * its dimensions for each year, as clients query them.
+	 */
+	private void materializeSlices() {
+		long debut = System.currentTimeMillis();
+		for (String file : loadedFiles.keySet()) {
+			String dataSetName = dataSetName(file);
+			if (!new File(DataCubeMaker.dsdFile(dataSetName)).exists()) {
+				continue;
+			}
+			CompiledDsd dsd = CompiledDsd.read(DataCubeMaker.dsdFile(dataSetName));
+			for (String year : years(dataSetName, dsd)) {
+				for (int i = 0; i < dsd.dimensionColumns.length; i++) {
+					String key = normalize(sliceQuery(dataSetName, dsd, i, year));
+					slices.put(key, execute(key));
+				}
+			}
+		}
+		logger.info(String.format("%d slices precalculees en %d ms", slices.size(),
+				System.currentTimeMillis() - debut));
+	}
+
+	private List<String> years(String dataSetName, CompiledDsd dsd) {
+		List<String> years = new ArrayList<>();
+		if (dsd.timePeriodProperty == null) {
+			years.add(null);
+			return years;
+		}
+		String query = String.format("SELECT DISTINCT ?period WHERE { GRAPH <%s> { ?observation <%s> ?period } }",
+				DataCubeMaker.dataSetURI(dataSetName), dsd.timePeriodProperty.getURI());
+		try (QueryExecution execution = QueryExecutionFactory.create(query, dataset)) {
+			execution.execSelect().forEachRemaining(solution -> years.add(solution.getLiteral("period").getLexicalForm()));
+		}
+		return years;
+	}
+
+	/**
+	 * Returns the query of the sum of the values of a data set for a year, by the
+	 * codes of one of its dimensions. The result has one row per code, whatever
+	 * the number of observations.
+	 */
+	static String sliceQuery(String dataSetName, CompiledDsd dsd, int dimension, String year) {
+		String dataSetURI = DataCubeMaker.dataSetURI(dataSetName);
+		String variable = variable(dsd, dimension);
+		StringBuilder where = new StringBuilder(String.format("GRAPH <%s> { ?observation <%s> <%s> ; <%s> ?%s",
+				dataSetURI, DataCubeOntology.dataSet.getURI(), dataSetURI, dsd.dimensionProperties[dimension].getURI(),
+				variable));
+		if (year != null) {
+			where.append(String.format(" ; <%s> \"%s\"^^<http://www.w3.org/2001/XMLSchema#gYear>",
+					dsd.timePeriodProperty.getURI(), year));
+		}
+		where.append(String.format(" ; <%s> ?value }", dsd.measureProperty.getURI()));
+		return String.format("SELECT ?%1$s (SUM(?value) AS ?total) WHERE { %2$s } GROUP BY ?%1$s ORDER BY ?%1$s",
+				variable, where);
+	}
+
+	private static String variable(CompiledDsd dsd, int dimension) {
+		return dsd.dimensionColumns[dimension].toLowerCase();
+	}
+
+	/** Normalizes a query by parsing and serializing it, so that formatting differences share a cache entry */
+	private static String normalize(String query) {
+		return QueryFactory.create(query).serialize();
+	}
+
+	private byte[] execute(String query) {
+		Query parsed = QueryFactory.create(query);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (QueryExecution execution = QueryExecutionFactory.create(parsed, dataset)) {
+			if (parsed.isSelectType()) {
+				ResultSet results = execution.execSelect();
+				ResultSetFormatter.outputAsJSON(out, results);
+			} else if (parsed.isAskType()) {
+				ResultSetFormatter.outputAsJSON(out, execution.execAsk());
+			} else {
+				throw new IllegalArgumentException("Seules les requetes SELECT et ASK sont servies");
+			}
+		}
+		return out.toByteArray();
+	}
+
+	private void handleQuery(HttpExchange exchange) throws IOException {
+		long debut = System.nanoTime();
+		try {
+			String query = parameters(exchange).get("query");
+			if (query == null) {
+				send(exchange, 400, "text/plain", "Parametre query absent".getBytes(StandardCharsets.UTF_8));
+				return;
+			}
+			reloadIfChanged();
+			String key = normalize(query);
+			byte[] result = slices.get(key);
+			long queryGeneration;
+			synchronized (cache) {
+				if (result == null) {
+					result = cache.get(key);
+				}
+				queryGeneration = generation;
+			}
+			boolean cached = result != null;
+			if (cached) {
+				hits.increment();
+			} else {
+				misses.increment();
+				result = execute(key);
+				synchronized (cache) {
+					// A result computed on data sets reloaded in the meantime is not kept
+					if (queryGeneration == generation) {
+						cache.put(key, result);
+					}
+				}
+			}
+			send(exchange, 200, RESULTS_JSON, result);
+			(cached ? cachedLatencies : uncachedLatencies).record(System.nanoTime() - debut);
+		} catch (QueryParseException | IllegalArgumentException e) {
+			send(exchange, 400, "text/plain", String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+		} catch (RuntimeException e) {
+			logger.error("Echec de requete", e);
+			send(exchange, 500, "text/plain", String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private void handleSlices(HttpExchange exchange) throws IOException {
+		JsonArray queries = new JsonArray();
+		new TreeMap<>(slices).keySet().forEach(queries::add);
+		send(exchange, 200, "application/json", queries.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void handleStats(HttpExchange exchange) throws IOException {
+		JsonObject stats = new JsonObject();
+		stats.put("cached", latencies(cachedLatencies));
+		stats.put("uncached", latencies(uncachedLatencies));
+		stats.put("hits", hits.sum());
+		stats.put("misses", misses.sum());
+		stats.put("slices", slices.size());
+		synchronized (cache) {
+			stats.put("cacheSize", cache.size());
+		}
+		send(exchange, 200, "application/json", stats.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static JsonObject latencies(LatencyRecorder recorder) {
+		JsonObject latencies = new JsonObject();
+		latencies.put("count", recorder.getCount());
+		latencies.put("p50Micros", recorder.percentileMicros(50));
+		latencies.put("p90Micros", recorder.percentileMicros(90));
+		latencies.put("p99Micros", recorder.percentileMicros(99));
+		return latencies;
+	}
+
+	private void logStatistics() {
+		logger.info(String.format("Requetes en cache : %s", cachedLatencies));
+		logger.info(String.format("Requetes hors cache : %s", uncachedLatencies));
+	}
+
+	/** Reads the parameters of the query string and, for a form POST, of the body */
+	private static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+		Map<String, String> parameters = new HashMap<>();
+		parseParameters(exchange.getRequestURI().getRawQuery(), parameters);
+		if ("POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+			String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+			try (InputStream body = exchange.getRequestBody()) {
+				String content = IOUtils.toString(body, StandardCharsets.UTF_8);
+				if (contentType != null && contentType.startsWith("application/sparql-query")) {
+					parameters.put("query", content);
+				} else {
+					parseParameters(content, parameters);
+				}
+			}
+		}
+		return parameters;
+	}
+
+	private static void parseParameters(String encoded, Map<String, String> parameters) throws IOException {
+		if (StringUtils.isEmpty(encoded)) {
+			return;
+		}
+		for (String parameter : encoded.split("&")) {
+			String[] nameValue = parameter.split("=", 2);
+			parameters.put(URLDecoder.decode(nameValue[0], "UTF-8"),
+					nameValue.length > 1 ? URLDecoder.decode(nameValue[1], "UTF-8") : "");
+		}
+	}
+
+	private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
@@ -0,0 +1,317 @@
+package eu.europa.ec.eurostat.los.codes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.vocabulary.SKOS;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import eu.europa.ec.eurostat.los.utils.Catalogue;
+import eu.europa.ec.eurostat.los.utils.CompressedOutput;
+import eu.europa.ec.eurostat.los.utils.JobScheduler;
+import eu.europa.ec.eurostat.los.utils.MappedCsvReader;
+import eu.europa.ec.eurostat.los.utils.OutputFormat;
+
+/**
+ * The <code>CubeValidator</code> class checks the data sets against the
+ * integrity constraints of the Data Cube vocabulary which matter for the
+ * generated cubes, without loading them: every dimension has a value (IC-11),
+ * no two observations share a key (IC-12), coded values belong to their code
+ * list (IC-19) and the measure is present (IC-14). The data set files are
+ * streamed triple by triple, or the CSV files row by row, and the code lists
+ * are held as hash sets of code URIs. Data sets are validated in parallel and
+ * the violations are written to a report, with row numbers for CSV inputs and
+ * observation URIs for RDF inputs.
+ */
+public class CubeValidator {
+	private static Logger logger = LogManager.getLogger(CubeValidator.class);
+
+	/** Option de main : les CSV sont valides a la place des data sets generes */
+	public static final String OPTION_CSV = "-csv";
+
+	private static final String REPORT_NAME = "rapport-validation.tsv";
+
+	/** Number of violations logged per data set, the report has them all */
+	private static final int MAX_LOGGED = 20;
+
+	/** Code URIs by code list, loaded once for all the data sets */
+	private static final Map<String, Set<String>> CODE_LISTS = new ConcurrentHashMap<>();
+
+	private static OutputFormat format = OutputFormat.TURTLE;
+	private static CompressedOutput compression = CompressedOutput.NONE;
+
+	private final String dataSetName;
+	private final CompiledDsd dsd;
+	/** Code URIs of each dimension then each attribute, null when the code list is missing */
+	private final List<Set<String>> codeLists;
+	private final List<String> violations = new ArrayList<>();
+
+	private CubeValidator(String dataSetName, CompiledDsd dsd) {
+		this.dataSetName = dataSetName;
+		this.dsd = dsd;
+		String[] columns = ArrayUtils.addAll(dsd.dimensionColumns, dsd.attributeColumns);
+		codeLists = new ArrayList<>(columns.length);
+		for (String column : columns) {
+			codeLists.add(codeList(column));
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Catalogue catalogue = Catalogue.fromArgs(args);
+		format = OutputFormat.fromArgs(args);
+		compression = CompressedOutput.fromArgs(args);
+		boolean csv = ArrayUtils.contains(args, OPTION_CSV);
+		JobScheduler scheduler = JobScheduler.fromArgs(args);
+		Map<String, List<String>> rapports = new ConcurrentHashMap<>();
+		for (Catalogue.DataSet dataSet : catalogue.getDataSets()) {
+			String dataSetName = dataSet.getName();
+			scheduler.submit(dataSetName, () -> {
+				CompiledDsd dsd = CompiledDsd.read(rdfFile("dsd-tourism-" + dataSetName));
+				List<String> violations = csv ? validateCsv(dataSet.getCsvFile(), dataSet.getMeasure(), dataSetName, dsd)
+						: validateDataSet(compression.fileName(rdfFile("ds-tourism-" + dataSetName)), dataSetName, dsd);
+				rapports.put(dataSetName, violations);
+			});
+		}
+		scheduler.runAll();
+
+		int total = 0;
+		String reportFile = catalogue.outputFile(REPORT_NAME);
+		try (PrintWriter report = new PrintWriter(
+				Files.newBufferedWriter(Paths.get(reportFile), StandardCharsets.UTF_8))) {
+			report.println("DATA_SET\tCONTRAINTE\tPOSITION\tDETAIL");
+			for (Map.Entry<String, List<String>> rapport : new TreeMap<>(rapports).entrySet()) {
+				for (String violation : rapport.getValue()) {
+					report.println(rapport.getKey() + "\t" + violation);
+				}
+				total += rapport.getValue().size();
+			}
+		}
+		logger.info(String.format("Validation de %d data sets : %d violations, rapport %s", rapports.size(), total,
+				reportFile));
+	}
+
+	/**
+	 * Validates the rows of a measure of a CSV file, as DataCubeMaker would
+	 * convert them.
+	 *
+	 * @return The violations, as tab-separated constraint, row number and detail.
+	 */
+	public static List<String> validateCsv(String csvFile, String measure, String dataSetName, CompiledDsd dsd)
+			throws IOException {
+		long debut = System.currentTimeMillis();
+		CubeValidator validator = new CubeValidator(dataSetName, dsd);
+		long rows = 0;
+		try (MappedCsvReader reader = MappedCsvReader.open(csvFile)) {
+			int measureColumn = reader.column("MEASURE");
+			int valueColumn = reader.column(CompiledDsd.OBS_VALUE_COLUMN);
+			int timeColumn = reader.column(CompiledDsd.TIME_PERIOD_COLUMN);
+			String[] columns = ArrayUtils.addAll(dsd.dimensionColumns, dsd.attributeColumns);
+			int[] columnIndexes = new int[columns.length];
+			String[] prefixes = new String[columns.length];
+			for (int i = 0; i < columns.length; i++) {
+				columnIndexes[i] = reader.column(columns[i]);
+				prefixes[i] = Configuration.codeItemURI(columns[i], "");
+			}
+			byte[] measureBytes = measure.getBytes(StandardCharsets.UTF_8);
+			Map<String, Long> keys = new HashMap<>();
+			StringBuilder key = new StringBuilder();
+			while (reader.next()) {
+				if (!reader.equalsBytes(measureColumn, measureBytes)) {
+					continue;
+				}
+				rows++;
+				long row = reader.getRowNumber();
+				key.setLength(0);
+				for (int i = 0; i < columns.length; i++) {
+					boolean dimension = i < dsd.dimensionColumns.length;
+					if (columnIndexes[i] < 0 || reader.isEmpty(columnIndexes[i])) {
+						if (dimension) {
+							validator.violation("IC-11", "ligne " + row, "dimension " + columns[i] + " sans valeur");
+						}
+						continue;
+					}
+					String code = reader.getInterned(columnIndexes[i]);
+					if (dimension) {
+						key.append(code).append('.');
+					}
+					Set<String> codeList = validator.codeLists.get(i);
+					if (codeList != null && !codeList.contains(prefixes[i] + code)) {
+						validator.violation("IC-19", "ligne " + row,
+								String.format("code %s absent de la liste de %s", code, columns[i]));
+					}
+				}
+				if (dsd.hasTimePeriod()) {
+					if (timeColumn < 0 || reader.isEmpty(timeColumn)) {
+						validator.violation("IC-11", "ligne " + row, "periode sans valeur");
+					} else {
+						key.append(reader.getInterned(timeColumn));
+					}
+				}
+				if (valueColumn < 0 || reader.isEmpty(valueColumn)) {
+					validator.violation("IC-14", "ligne " + row, "valeur de la mesure absente");
+				} else {
+					try {
+						reader.getLong(valueColumn);
+					} catch (NumberFormatException e) {
+						validator.violation("IC-14", "ligne " + row, "valeur non entiere " + reader.getString(valueColumn));
+					}
+				}
+				Long previous = keys.putIfAbsent(key.toString(), row);
+				if (previous != null) {
+					validator.violation("IC-12", "ligne " + row,
+							String.format("observation %s deja lue ligne %d", key, previous));
+				}
+			}
+		}
+		return validator.finish(csvFile, rows, debut);
+	}
+
+	/**
+	 * Validates a generated data set file by streaming its triples. The state kept
+	 * per observation is the set of the dimensions and measure already met.
+	 *
+	 * @return The violations, as tab-separated constraint, observation URI and detail.
+	 */
+	public static List<String> validateDataSet(String dataSetFile, String dataSetName, CompiledDsd dsd) {
+		long debut = System.currentTimeMillis();
+		CubeValidator validator = new CubeValidator(dataSetName, dsd);
+		ObservationStream stream = validator.new ObservationStream();
+		RDFDataMgr.parse(stream, dataSetFile);
+		int complete = (1 << stream.measureBit + 1) - 1;
+		for (Map.Entry<Node, int[]> observation : stream.observations.entrySet()) {
+			int missing = ~observation.getValue()[0] & complete;
+			for (int bit = 0; missing != 0; bit++, missing >>>= 1) {
+				if ((missing & 1) != 0) {
+					validator.violation(bit == stream.measureBit ? "IC-14" : "IC-11", observation.getKey().getURI(),
+							(bit == stream.measureBit ? "mesure" : "dimension " + stream.componentName(bit))
+									+ " sans valeur");
+				}
+			}
+		}
+		return validator.finish(dataSetFile, stream.observations.size(), debut);
+	}
+
+	/** Receives the triples of a data set and checks them component by component */
+	private class ObservationStream extends StreamRDFBase {
+		/** Bit of each dimension, of the time period, then of the measure */
+		private final Map<Node, Integer> bits = new HashMap<>();
+		/** Index in the code lists of each coded dimension and attribute */
+		private final Map<Node, Integer> coded = new HashMap<>();
+		private final int measureBit;
+		private final Map<Node, int[]> observations = new HashMap<>();
+
+		ObservationStream() {
+			int bit = 0;
+			for (int i = 0; i < dsd.dimensionProperties.length; i++) {
+				coded.put(dsd.dimensionProperties[i].asNode(), i);
+				bits.put(dsd.dimensionProperties[i].asNode(), bit++);
+			}
+			for (int i = 0; i < dsd.attributeProperties.length; i++) {
+				coded.put(dsd.attributeProperties[i].asNode(), dsd.dimensionProperties.length + i);
+			}
+			if (dsd.timePeriodProperty != null) {
+				bits.put(dsd.timePeriodProperty.asNode(), bit++);
+			}
+			measureBit = bit;
+			bits.put(dsd.measureProperty.asNode(), measureBit);
+		}
+
+		String componentName(int bit) {
+			for (Map.Entry<Node, Integer> entry : bits.entrySet()) {
+				if (entry.getValue() == bit) {
+					return entry.getKey().getLocalName();
+				}
+			}
+			return String.valueOf(bit);
+		}
+
+		@Override
+		public void triple(Triple triple) {
+			Integer bit = bits.get(triple.getPredicate());
+			Integer codeList = coded.get(triple.getPredicate());
+			if (bit == null && codeList == null) {
+				return;
+			}
+			Set<String> codes = codeList == null ? null : codeLists.get(codeList);
+			if (codes != null && !(triple.getObject().isURI() && codes.contains(triple.getObject().getURI()))) {
+				violation("IC-19", triple.getSubject().toString(),
+						String.format("%s absent de la liste de %s", triple.getObject(),
+								triple.getPredicate().getLocalName()));
+			}
+			if (bit != null) {
+				int[] seen = observations.computeIfAbsent(triple.getSubject(), s -> new int[1]);
+				if ((seen[0] & 1 << bit) != 0) {
+					violation("IC-12", triple.getSubject().toString(), String.format(
+							"plusieurs valeurs de %s, observation en double", triple.getPredicate().getLocalName()));
+				}
+				seen[0] |= 1 << bit;
+			}
+		}
+
+		@Override
+		public void quad(Quad quad) {
+			triple(quad.asTriple());
+		}
+	}
+
+	private void violation(String constraint, String position, String detail) {
+		if (violations.size() < MAX_LOGGED) {
+			logger.warn(String.format("%s %s %s : %s", dataSetName, constraint, position, detail));
+		}
+		violations.add(constraint + "\t" + position + "\t" + detail);
+	}
+
+	private List<String> finish(String file, long observations, long debut) {
+		logger.info(String.format("Validation de %s : %d observations, %d violations, en %d ms", file, observations,
+				violations.size(), System.currentTimeMillis() - debut));
+		return violations;
+	}
+
+	/**
+	 * Returns the code URIs of the code list of a column, null if the code list
+	 * file does not exist, in which case the codes of the column are not checked.
+	 */
+	private static Set<String> codeList(String column) {
+		String clTag = column.toLowerCase();
+		Set<String> codes = CODE_LISTS.computeIfAbsent(clTag, tag -> {
+			String clFile = rdfFile("cl-" + tag);
+			if (!new File(clFile).exists()) {
+				logger.warn(String.format("Pas de liste de codes pour %s, codes non verifies", column));
+				return Collections.emptySet();
+			}
+			Model clModel = OutputFormat.read(clFile);
+			Set<String> uris = new HashSet<>();
+			clModel.listSubjectsWithProperty(SKOS.inScheme).forEachRemaining(item -> uris.add(item.getURI()));
+			return uris;
+		});
+		return codes.isEmpty() ? null : codes;
+	}
+
+	/** RDF file in the format of the run if it was generated in it, in Turtle otherwise */
+	private static String rdfFile(String baseName) {
+		String fileName = format.fileName(Catalogue.get().outputFile(baseName));
+		return new File(compression.fileName(fileName)).exists() || new File(fileName).exists() ? fileName
+				: OutputFormat.TURTLE.fileName(Catalogue.get().outputFile(baseName));
+	}
+}
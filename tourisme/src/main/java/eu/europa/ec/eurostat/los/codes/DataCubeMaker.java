@@ -1,161 +1,528 @@
 package eu.europa.ec.eurostat.los.codes;
 
-import java.io.FileOutputStream;
-import java.io.FileReader;
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
-import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.jena.datatypes.xsd.XSDDatatype;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
-import org.apache.jena.rdf.model.NodeIterator;
-import org.apache.jena.rdf.model.Property;
-import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.ResIterator;
 import org.apache.jena.rdf.model.Resource;
-import org.apache.jena.riot.Lang;
-import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.shared.PrefixMapping;
 import org.apache.jena.vocabulary.RDF;
 import org.apache.jena.vocabulary.XSD;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import com.opencsv.CSVReaderHeaderAware;
-
+import eu.europa.ec.eurostat.los.utils.Catalogue;
+import eu.europa.ec.eurostat.los.utils.CompressedOutput;
 import eu.europa.ec.eurostat.los.utils.DataCubeOntology;
+import eu.europa.ec.eurostat.los.utils.JobScheduler;
+import eu.europa.ec.eurostat.los.utils.MappedCsvReader;
+import eu.europa.ec.eurostat.los.utils.OutputFormat;
+import eu.europa.ec.eurostat.los.utils.RunMetrics;
+import eu.europa.ec.eurostat.los.utils.RunMetrics.Metric;
+import eu.europa.ec.eurostat.los.utils.Tdb2Sink;
 
 public class DataCubeMaker {
 	private static Logger logger = LogManager.getLogger(DataCubeMaker.class);
 
-	private static final String RDF_DIRECTORY_DS = "src/main/resources/rdf/ds-";
+	/** Prefix mappings of the data set files */
+	private static final PrefixMapping DATA_SET_PREFIXES = PrefixMapping.Factory.create()
+			.setNsPrefix("xsd", XSD.getURI())
+			.setNsPrefix("qb", DataCubeOntology.getURI())
+			.setNsPrefix("dim", "http://id.insee.fr/meta/dimension/")
+			.setNsPrefix("mes", "http://id.insee.fr/meta/mesure/")
+			.setNsPrefix("att", "http://id.insee.fr/meta/attribute/")
+			.setNsPrefix("sdmxdim", "http://purl.org/linked-data/sdmx/2009/dimension#")
+			.lock();
+
+	/** Option de main : les observations sont ecrites au fil de la lecture du CSV au lieu d'un Model en memoire */
+	public static final String OPTION_STREAM = "-stream";
+	/** Option de main : chaque CSV est lu une seule fois pour toutes les mesures qu'il contient */
+	public static final String OPTION_SINGLE_PASS = "-single-pass";
+
+	/** Option de main : les gros fichiers sont decoupes en chunks de N octets convertis en parallele */
+	public static final String OPTION_CHUNK_SIZE = "-chunk-size=";
+
+	/** Option de main : les cles d'observation sont remplacees par leur empreinte compacte */
+	public static final String OPTION_COMPACT_KEYS = "-compact-keys";
+	/** Option de main : seules les observations nouvelles ou modifiees depuis le dernier index sont ecrites */
+	public static final String OPTION_INCREMENTAL = "-incremental";
+
+	private static final String DIRECTORY_INCREMENTAL = "incremental/";
+
+	private static boolean enFlux = false;
+	private static CompressedOutput compression = CompressedOutput.NONE;
+	private static OutputFormat format = OutputFormat.TURTLE;
+	private static boolean clesCompactes = false;
+	private static boolean incremental = false;
+	private static long tailleChunk = 0;
+	private static Tdb2Sink tdb2 = null;
 
 	public static void main(String[] args) throws IOException {
+		Tdb2Sink sink = Tdb2Sink.fromArgs(args);
+		try {
+			generer(args, sink);
+		} finally {
+			if (sink != null) {
+				sink.close();
+			}
+		}
+	}
+
+	/**
+	 * Converts the data sets selected in the catalogue, into the TDB2 database
+	 * given by the caller if it is not null, which stays open.
+	 */
+	public static void generer(String[] args, Tdb2Sink sink) throws IOException {
+		Catalogue catalogue = Catalogue.fromArgs(args);
+		configurer(args);
+		tdb2 = sink;
+		if (tdb2 != null && (incremental || tailleChunk > 0)) {
+			logger.warn("Chargement TDB2 : les graphes sont recharges en entier, sans increment ni chunks");
+			incremental = false;
+			tailleChunk = 0;
+		}
+		JobScheduler scheduler = JobScheduler.fromArgs(args);
+
+		if (ArrayUtils.contains(args, OPTION_SINGLE_PASS)) {
+			for (Map.Entry<String, List<Catalogue.DataSet>> csvFile : catalogue.getDataSetsByCsvFile().entrySet()) {
+				soumettreFichier(scheduler, csvFile.getValue(), csvFile.getKey());
+			}
+		} else {
+			for (Catalogue.DataSet dataSet : catalogue.getDataSets()) {
+				soumettreMeasure(scheduler, dataSet.getType(), dataSet.getMeasure(), dataSet.getCsvFile());
+			}
+		}
+		try {
+			scheduler.runAll();
+		} finally {
+			// The metrics of the data sets converted are reported even if others failed
+			CodeItemCache.logStatistics();
+			RunMetrics.export(args);
+		}
+	}
 
-		traiterUneMeasure("nuts-nacer2", "occ_arr", "src/main/resources/data/tourism-nuts-nace-r2-fr.csv");
-		traiterUneMeasure("nuts-nacer2", "occ_ni", "src/main/resources/data/tourism-nuts-nace-r2-fr.csv");
+	/**
+	 * Reads the options of the conversion of the data sets from the arguments of a
+	 * main method, for the callers of traiterUneMeasure which do not go through
+	 * main. The options absent from the arguments take their default value.
+	 */
+	static void configurer(String[] args) {
+		enFlux = ArrayUtils.contains(args, OPTION_STREAM);
+		clesCompactes = ArrayUtils.contains(args, OPTION_COMPACT_KEYS);
+		incremental = ArrayUtils.contains(args, OPTION_INCREMENTAL);
+		compression = CompressedOutput.fromArgs(args);
+		format = OutputFormat.fromArgs(args);
+		tailleChunk = 0;
+		for (String arg : args) {
+			if (arg.startsWith(OPTION_CHUNK_SIZE)) {
+				tailleChunk = Long.parseLong(arg.substring(OPTION_CHUNK_SIZE.length()));
+			}
+		}
+	}
 
-		traiterUneMeasure("degurba", "occ_arr", "src/main/resources/data/tourism-degurba-fr.csv");
-		traiterUneMeasure("degurba", "occ_ni", "src/main/resources/data/tourism-degurba-fr.csv");
+	/**
+	 * Describes the options read by configurer which change the content or the
+	 * layout of the data set files, for the builds which compare runs.
+	 */
+	static String options() {
+		return String.format("format=%s compression=%s cles-compactes=%b flux=%b incremental=%b chunks=%d",
+				format.getExtension(), compression, clesCompactes, enFlux, incremental, tailleChunk);
+	}
 
-		traiterUneMeasure("partner", "occ_arr", "src/main/resources/data/tourism-partner-fr.csv");
-		traiterUneMeasure("partner", "occ_ni", "src/main/resources/data/tourism-partner-fr.csv");
+	private static void soumettreMeasure(JobScheduler scheduler, String typeDsd, String measure, String csvFile) {
+		String dataSetName = dataSetName(typeDsd, measure);
+		scheduler.submit(dataSetName, () -> traiterUneMeasure(typeDsd, measure, csvFile), fichierEcrit(dataSetName));
+	}
 
-		traiterUneMeasure("terrtypo", "occ_arr", "src/main/resources/data/tourism-terrtypo-fr.csv");
-		traiterUneMeasure("terrtypo", "occ_ni", "src/main/resources/data/tourism-terrtypo-fr.csv");
+	/**
+	 * Submits the conversion of the data sets of a CSV file in a single reading.
+	 * The rows are routed by measure within a DSD type, so a file shared by data
+	 * sets of several types is read once per type. The job reports the size of
+	 * all its data sets, and the size of each one is logged.
+	 */
+	private static void soumettreFichier(JobScheduler scheduler, List<Catalogue.DataSet> dataSets, String csvFile) {
+		Map<String, Set<String>> measuresByType = new LinkedHashMap<>();
+		for (Catalogue.DataSet dataSet : dataSets) {
+			measuresByType.computeIfAbsent(dataSet.getType(), type -> new HashSet<>()).add(dataSet.getMeasure());
+		}
+		for (Map.Entry<String, Set<String>> type : measuresByType.entrySet()) {
+			String typeDsd = type.getKey();
+			Set<String> measures = type.getValue();
+			scheduler.submit(typeDsd, () -> {
+				List<String> dataSetFiles = traiterFichier(typeDsd, measures, csvFile);
+				for (String dataSetFile : dataSetFiles) {
+					logger.info(String.format("Data set %s : %d octets", dataSetFile, new File(dataSetFile).length()));
+				}
+				return dataSetFiles;
+			});
+		}
 	}
 
-	private static void traiterUneMeasure(String typeDsd, String measure, String csvFile) {
+	static void traiterUneMeasure(String typeDsd, String measure, String csvFile) throws IOException {
 		logger.info(String.format("traiterUneMeasure %s %s %s",typeDsd, measure, csvFile));
-		try (FileReader fileReader = new FileReader(csvFile)) {
-
-			Model tourismDepModel = ModelFactory.createDefaultModel();
-			tourismDepModel.setNsPrefix("xsd", XSD.getURI());
-			tourismDepModel.setNsPrefix("qb", DataCubeOntology.getURI());
-
-			tourismDepModel.setNsPrefix("dim", "http://id.insee.fr/meta/dimension/");
-			tourismDepModel.setNsPrefix("mes", "http://id.insee.fr/meta/mesure/");
-			tourismDepModel.setNsPrefix("att", "http://id.insee.fr/meta/attribute/");
-			tourismDepModel.setNsPrefix("sdmxdim", "http://purl.org/linked-data/sdmx/2009/dimension#");
-
-			String dataSetName = typeDsd + "-" + StringUtils.remove(measure, "_");
-			Resource tourismDataSet = tourismDepModel.createResource(
-					Configuration.BASE_URI + "dataSet/tourism-" + dataSetName, DataCubeOntology.DataSet);
-
-			Model modelDsd = ModelFactory.createDefaultModel();
-			modelDsd.read("src/main/resources/rdf/dsd-tourism-" + dataSetName + ".ttl");
-
-			// Dimensions and measure
-//			Property cresidDimensionProperty = tourismDepModel.createProperty(Configuration.componentURI("dimension", "C_RESID"));
-//			Property nutsDimensionProperty = tourismDepModel.createProperty(Configuration.componentURI("dimension", "NUTS"));
-//			Property nacer2DimensionProperty = tourismDepModel.createProperty(Configuration.componentURI("dimension", "NACE_R2"));
-//			Property timePeriodDimensionProperty = tourismDepModel.createProperty("http://purl.org/linked-data/sdmx/2009/dimension#timePeriod");
-//			Property measureProperty = tourismDepModel.createProperty(Configuration.componentURI("mesure", "MEASURE"));
-//			//Property observationProperty = tourismDepModel.createProperty(Configuration.componentURI("dimension", "OBS_VALUE"));
-//
-//			Property obsStatusAttributProperty = tourismDepModel.createProperty(Configuration.componentURI("attribute", "OBS_STATUS"));
-//			Property confStatusAttributProperty = tourismDepModel.createProperty(Configuration.componentURI("attribute", "CONF_STATUS"));
-//			Property unitAttributProperty = tourismDepModel.createProperty(Configuration.componentURI("attribute", "UNIT"));
-
-			CSVReaderHeaderAware reader = new CSVReaderHeaderAware(fileReader);
-			Map<String, String> nextLine;
-			while ((nextLine = reader.readMap()) != null) {
+		String dataSetName = dataSetName(typeDsd, measure);
+		if (tailleChunk > 0 && !incremental) {
+			try (OutputStream out = compression.open(dataSetFile(dataSetName))) {
+				new ChunkedCsvConverter(tailleChunk, ForkJoinPool.commonPool(), format).convertir(csvFile, measure,
+						CompiledDsd.read(dsdFile(dataSetName)), dataSetName, out);
+			}
+			return;
+		}
+		Metric filtrees = RunMetrics.counter(RunMetrics.ROWS_FILTERED, dataSetName);
+		try (DataSetSink sink = ouvrirDataSet(dataSetName)) {
+			lireCsv(csvFile, dataSetName, nextLine -> {
 				if (measure.equals(nextLine.get("MEASURE"))) {
-					// traiterLigneArrivee(nextLine,tourismDepModel,tourismDataSet);
-					traiterLigne(tourismDepModel, tourismDataSet, nextLine, modelDsd);
+					sink.ajouterLigne(nextLine);
+				} else {
+					filtrees.increment();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Converts one measure of a CSV file without holding the data set in memory:
+	 * the triples of each observation are sent to a streaming writer as soon as its
+	 * row is read, so that memory use does not depend on the number of rows.
+	 * 
+	 * @param out The stream receiving the document, in the format of the run, not
+	 *            closed by this method.
+	 */
+	public static void traiterUneMeasureEnFlux(String typeDsd, String measure, String csvFile, OutputStream out)
+			throws IOException {
+		logger.info(String.format("traiterUneMeasureEnFlux %s %s %s", typeDsd, measure, csvFile));
+		String dataSetName = dataSetName(typeDsd, measure);
+		Metric filtrees = RunMetrics.counter(RunMetrics.ROWS_FILTERED, dataSetName);
+		DataSetSink sink = new DataSetSink(dataSetName, out, true, null);
+		try {
+			lireCsv(csvFile, dataSetName, nextLine -> {
+				if (measure.equals(nextLine.get("MEASURE"))) {
+					sink.ajouterLigne(nextLine);
+				} else {
+					filtrees.increment();
+				}
+			});
+		} finally {
+			sink.finish();
+			sink.enregistrerMetriques();
+		}
+	}
+
+	/**
+	 * Converts all the measures of a CSV file in a single reading of the file. Each
+	 * row is routed to the data set of its MEASURE value, the data sets being
+	 * created when their measure is met for the first time. Rows of a measure
+	 * which is not selected or has no DSD are ignored.
+	 * 
+	 * @param measures The measures to convert, all those with a DSD if null.
+	 * @return The data set files written.
+	 */
+	public static List<String> traiterFichier(String typeDsd, Set<String> measures, String csvFile)
+			throws IOException {
+		logger.info(String.format("traiterFichier %s %s", typeDsd, csvFile));
+		Map<String, DataSetSink> sinks = new LinkedHashMap<>();
+		List<String> dataSetFiles = new ArrayList<>();
+		Metric filtrees = RunMetrics.counter(RunMetrics.ROWS_FILTERED, typeDsd);
+		try {
+			lireCsv(csvFile, typeDsd, nextLine -> {
+				String measure = nextLine.get("MEASURE");
+				if (!sinks.containsKey(measure)) {
+					sinks.put(measure, measures == null || measures.contains(measure)
+							? ouvrirDataSet(typeDsd, measure, dataSetFiles)
+							: null);
+				}
+				DataSetSink sink = sinks.get(measure);
+				if (sink != null) {
+					sink.ajouterLigne(nextLine);
+				} else {
+					filtrees.increment();
+				}
+			});
+		} finally {
+			for (DataSetSink sink : sinks.values()) {
+				try {
+					if (sink != null) {
+						sink.close();
+					}
+				} catch (IOException e) {
+					logger.error(e);
 				}
 			}
-			reader.close();
-			RDFDataMgr.write(new FileOutputStream(RDF_DIRECTORY_DS + "tourism-" + dataSetName + ".ttl"),
-					tourismDepModel, Lang.TURTLE);
+		}
+		return dataSetFiles;
+	}
 
-		} catch (IOException e) {
-			logger.error(e);
+	private static DataSetSink ouvrirDataSet(String typeDsd, String measure, List<String> dataSetFiles)
+			throws IOException {
+		String dataSetName = dataSetName(typeDsd, measure);
+		if (!new File(dsdFile(dataSetName)).exists()) {
+			logger.warn(String.format("Pas de DSD pour la mesure %s, lignes ignorees", measure));
+			return null;
 		}
+		logger.info(String.format("Nouveau data set %s", dataSetName));
+		dataSetFiles.add(fichierEcrit(dataSetName));
+		return ouvrirDataSet(dataSetName);
 	}
 
-	private static void traiterLigne(Model tourismDepModel, Resource tourismDataSet, Map<String, String> nextLine,
-			Model modelDsd) {
-		Resource observation = tourismDepModel.createResource(Configuration.observationURI(nextLine.get("OBS_VALUE")),
-				DataCubeOntology.Observation);
-		observation.addProperty(DataCubeOntology.dataSet, tourismDataSet);
+	/**
+	 * Opens the output of a data set. In incremental mode, the observations which
+	 * did not change since the previous run are filtered out and the others are
+	 * written to a delta file. When loading into TDB2, the data set and its DSD
+	 * replace their named graphs.
+	 */
+	private static DataSetSink ouvrirDataSet(String dataSetName) throws IOException {
+		if (tdb2 != null) {
+			Model dsd = OutputFormat.read(dsdFile(dataSetName));
+			ResIterator dsdIt = dsd.listResourcesWithProperty(RDF.type, DataCubeOntology.DataStructureDefinition);
+			if (dsdIt.hasNext()) {
+				tdb2.load(dsdIt.next().getURI(), dsd);
+			}
+			return new DataSetSink(dataSetName, tdb2.graphStream(dataSetURI(dataSetName)));
+		}
+		ObservationKeyIndex index = incremental ? ObservationKeyIndex.load(indexFile(dataSetName)) : null;
+		if (incremental) {
+			new File(Catalogue.get().outputFile(DIRECTORY_INCREMENTAL)).mkdirs();
+		}
+		return new DataSetSink(dataSetName, compression.open(fichierSortie(dataSetName)), enFlux, index);
+	}
 
-//		ResIterator attribIt = modelDsd.listResourcesWithProperty(DataCubeOntology.attribute);
-//		ResIterator dimIt = modelDsd.listResourcesWithProperty(DataCubeOntology.dimension);
-		// ResIterator measureIt =
-		// modelDsd.listResourcesWithProperty(DataCubeOntology.measure);
-
-		NodeIterator measureIt = modelDsd.listObjectsOfProperty(DataCubeOntology.measure);
-		while (measureIt.hasNext()) {
-			RDFNode mes = measureIt.next();
-			logger.info(mes.toString());
-			logger.info(mes.asResource().getLocalName());
-			logger.info(mes.asResource().getURI());
-			logger.info(mes.asResource().getNameSpace());
-			// Property dimensionProperty =
-			// tourismDepModel.createProperty(Configuration.componentURI("dimension",
-			// dim.asLiteral().getString()));
-		}
-		NodeIterator attrIt = modelDsd.listObjectsOfProperty(DataCubeOntology.attribute);
-		while (attrIt.hasNext()) {
-			RDFNode att = attrIt.next();
-			String localNameUC = att.asResource().getLocalName().toUpperCase();
-			logger.info(localNameUC);
-
-			Resource resource = tourismDepModel
-					.createResource(Configuration.codeItemURI(localNameUC, nextLine.get(localNameUC)));
-			Property property = tourismDepModel.createProperty(Configuration.componentURI("attribute", localNameUC));
-			observation.addProperty(property, resource);
-
-		}
-		ResIterator dimIt = modelDsd.listResourcesWithProperty(RDF.type, DataCubeOntology.DimensionProperty);
-		while (dimIt.hasNext()) {
-			Resource dim = dimIt.next();
-			logger.info(dim.toString());
-			if (StringUtils.isNoneEmpty(dim.getLocalName())) {
-
-				String localNameUC = dim.getLocalName().toUpperCase();
-				logger.info(localNameUC);
-				Resource resource = tourismDepModel
-						.createResource(Configuration.codeItemURI(localNameUC, nextLine.get(localNameUC)));
-				Property property = tourismDepModel
-						.createProperty(Configuration.componentURI("dimension", localNameUC));
-
-				observation.addProperty(property, resource);
+	public interface LigneHandler {
+		void traiter(Map<String, String> nextLine) throws IOException;
+	}
+
+	/**
+	 * Reads the rows of a CSV file as maps from the header columns to the values.
+	 * The same map is filled again for each row, so handlers must not keep it. The
+	 * rows read and the parsing time, handlers excluded, are added to the metrics
+	 * of the tag once the file is read.
+	 */
+	public static void lireCsv(String csvFile, String tag, LigneHandler handler) throws IOException {
+		long lignes = 0;
+		long lecture = 0;
+		try (MappedCsvReader reader = MappedCsvReader.open(csvFile)) {
+			String[] header = reader.getHeader();
+			Map<String, String> nextLine = new LinkedHashMap<>();
+			long debut = System.nanoTime();
+			while (reader.next()) {
+				if (reader.getFieldCount() != header.length) {
+					throw new IOException(String.format("Ligne %d de %s : %d valeurs pour %d colonnes",
+							reader.getRowNumber(), csvFile, reader.getFieldCount(), header.length));
+				}
+				for (int column = 0; column < header.length; column++) {
+					nextLine.put(header[column], reader.getInterned(column));
+				}
+				lignes++;
+				lecture += System.nanoTime() - debut;
+				handler.traiter(nextLine);
+				debut = System.nanoTime();
+			}
+		} finally {
+			RunMetrics.counter(RunMetrics.ROWS_READ, tag).add(lignes);
+			RunMetrics.timer(RunMetrics.PARSING, tag).add(lecture);
+		}
+	}
+
+	/**
+	 * Output of one data set. Observations are either accumulated in a Model which
+	 * is written when the sink is closed, or sent to a streaming writer one row at
+	 * a time. When an index is given, only the new or changed observations
+	 * are written and the index is saved on close. A sink without output stream
+	 * sends its triples to a TDB2 graph, which is checked on close against the
+	 * file of a previous run. The sink counts its triples, bytes and building and
+	 * serializing times, and adds them to the metrics of the data set at the end.
+	 */
+	private static class DataSetSink implements Closeable {
+		private final String dataSetName;
+		private final CountingOutputStream out;
+		private final CompiledDsd dsd;
+		private final Model model;
+		private final Resource dataSet;
+		private final StreamRDF stream;
+		private final ObservationKeyIndex index;
+		/** Converts the rows in streaming mode */
+		private final ObservationTripleWriter writer;
+		private long triples = 0;
+		private long construction = 0;
+		private long serialisation = 0;
+
+		DataSetSink(String dataSetName, OutputStream out, boolean streaming, ObservationKeyIndex index) {
+			this(dataSetName, new CountingOutputStream(out), streaming, null, index);
+		}
+
+		DataSetSink(String dataSetName, StreamRDF graphStream) {
+			this(dataSetName, null, false, graphStream, null);
+		}
+
+		private DataSetSink(String dataSetName, CountingOutputStream out, boolean streaming, StreamRDF graphStream,
+				ObservationKeyIndex index) {
+			this.dataSetName = dataSetName;
+			this.out = out;
+			this.index = index;
+			StreamRDF stream = streaming ? format.openStream(out, dataSetURI(dataSetName)) : graphStream;
+			this.dsd = CompiledDsd.read(dsdFile(dataSetName));
+			// In streaming mode the model only carries the data set, the observations are written node by node
+			this.model = createDataSetModel();
+			this.dataSet = model.createResource(dataSetURI(dataSetName), DataCubeOntology.DataSet);
+			this.stream = stream;
+			this.writer = stream == null ? null : new ObservationTripleWriter(dsd, dataSetURI(dataSetName));
+			if (stream != null) {
+				stream.start();
+				model.getNsPrefixMap().forEach(stream::prefix);
+				triples += model.size();
+				sendToStream(model, stream);
+			}
+		}
+
+		void ajouterLigne(Map<String, String> nextLine) {
+			String key = observationKey(dsd, nextLine);
+			if (index != null && !index.record(key, dsd.observationFingerprint(nextLine))) {
+				return;
+			}
+			String observationURI = Configuration.observationURI(dataSetName, key);
+			long debut = System.nanoTime();
+			if (stream == null) {
+				traiterLigne(model, dataSet, observationURI, nextLine, dsd);
+				construction += System.nanoTime() - debut;
+				return;
+			}
+			writer.convertir(observationURI, nextLine);
+			long construit = System.nanoTime();
+			construction += construit - debut;
+			writer.envoyer(stream);
+			serialisation += System.nanoTime() - construit;
+		}
+
+		/** Completes the output without closing the underlying stream */
+		void finish() {
+			long debut = System.nanoTime();
+			if (stream != null) {
+				stream.finish();
 			} else {
-				logger.info("timePeriodProperty");
-				Property timePeriodProperty = tourismDepModel
-						.createProperty("http://purl.org/linked-data/sdmx/2009/dimension#timePeriod");
-				observation.addProperty(timePeriodProperty,
-						tourismDepModel.createTypedLiteral(nextLine.get("TIME_PERIOD"), XSDDatatype.XSDgYear));
+				triples = model.size();
+				format.write(out, model, dataSetURI(dataSetName));
+			}
+			serialisation += System.nanoTime() - debut;
+		}
+
+		void enregistrerMetriques() {
+			RunMetrics.counter(RunMetrics.TRIPLES_EMITTED, dataSetName)
+					.add(writer == null ? triples : triples + writer.getCount());
+			RunMetrics.timer(RunMetrics.BUILDING, dataSetName).add(construction);
+			RunMetrics.timer(RunMetrics.SERIALIZING, dataSetName).add(serialisation);
+			if (out != null) {
+				RunMetrics.counter(RunMetrics.BYTES_WRITTEN, dataSetName).add(out.getByteCount());
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				finish();
+				if (index != null) {
+					index.save(indexFile(dataSetName));
+				}
+			} finally {
+				if (out != null) {
+					out.close();
+				}
+				enregistrerMetriques();
 			}
+		}
+	}
+
+	static void sendToStream(Model model, StreamRDF stream) {
+		model.getGraph().find().forEachRemaining(stream::triple);
+	}
+
+	static String observationKey(CompiledDsd dsd, Map<String, String> nextLine) {
+		String key = dsd.observationKey(nextLine);
+		return clesCompactes ? Configuration.compactKey(key) : key;
+	}
+
+	public static Model createDataSetModel() {
+		Model tourismDepModel = ModelFactory.createDefaultModel();
+		tourismDepModel.setNsPrefixes(DATA_SET_PREFIXES);
+		return tourismDepModel;
+	}
+
+	static String dataSetName(String typeDsd, String measure) {
+		return Catalogue.dataSetName(typeDsd, measure);
+	}
+
+	static String dataSetURI(String dataSetName) {
+		return Configuration.BASE_URI + "dataSet/tourism-" + dataSetName;
+	}
+
+	static String dataSetFile(String dataSetName) {
+		return format.fileName(Catalogue.get().outputFile("ds-tourism-" + dataSetName));
+	}
+
+	private static String fichierSortie(String dataSetName) {
+		return incremental ? format.fileName(
+				Catalogue.get().outputFile(DIRECTORY_INCREMENTAL + "ds-tourism-" + dataSetName + "-delta"))
+				: dataSetFile(dataSetName);
+	}
 
+	/** Name of the file written for a data set, once compressed */
+	static String fichierEcrit(String dataSetName) {
+		return compression.fileName(fichierSortie(dataSetName));
+	}
+
+	private static String indexFile(String dataSetName) {
+		return Catalogue.get().outputFile(DIRECTORY_INCREMENTAL + "idx-tourism-" + dataSetName + ".tsv");
+	}
+
+	/** DSD file of a data set, in the format of the run if it was generated in it, in Turtle otherwise */
+	static String dsdFile(String dataSetName) {
+		String baseName = Catalogue.get().outputFile("dsd-tourism-" + dataSetName);
+		return new File(format.fileName(baseName)).exists() ? format.fileName(baseName)
+				: OutputFormat.TURTLE.fileName(baseName);
+	}
+
+	public static void traiterLigne(Model tourismDepModel, Resource tourismDataSet, String observationURI,
+			Map<String, String> nextLine, CompiledDsd dsd) {
+		String obsValue = nextLine.get(CompiledDsd.OBS_VALUE_COLUMN);
+		Resource observation = tourismDepModel.createResource(observationURI, DataCubeOntology.Observation);
+		observation.addProperty(DataCubeOntology.dataSet, tourismDataSet);
+
+		for (int i = 0; i < dsd.attributeColumns.length; i++) {
+			if (!nextLine.containsKey(dsd.attributeColumns[i])) {
+				continue;
+			}
+			observation.addProperty(dsd.attributeProperties[i],
+					dsd.attributeItems[i].item(nextLine.get(dsd.attributeColumns[i])));
+		}
+		for (int i = 0; i < dsd.dimensionColumns.length; i++) {
+			observation.addProperty(dsd.dimensionProperties[i],
+					dsd.dimensionItems[i].item(nextLine.get(dsd.dimensionColumns[i])));
+		}
+		if (dsd.timePeriodProperty != null) {
+			observation.addProperty(dsd.timePeriodProperty, tourismDepModel
+					.createTypedLiteral(nextLine.get(CompiledDsd.TIME_PERIOD_COLUMN), XSDDatatype.XSDgYear));
 		}
-		Property measureProperty = tourismDepModel.createProperty(Configuration.componentURI("mesure", "MEASURE"));
 
-		// Add measure
-		observation.addProperty(measureProperty,
-				tourismDepModel.createTypedLiteral(Integer.valueOf(nextLine.get("OBS_VALUE"))));
+		// Add measure: an xsd:int, or an xsd:long beyond its range, as the aggregates of HierarchyRollUp can be
+		long value = Long.parseLong(obsValue);
+		if (value == (int) value) {
+			observation.addProperty(dsd.measureProperty, tourismDepModel.createTypedLiteral(Integer.valueOf((int) value)));
+		} else {
+			observation.addProperty(dsd.measureProperty, tourismDepModel.createTypedLiteral(Long.valueOf(value)));
+		}
 	}
 
 }
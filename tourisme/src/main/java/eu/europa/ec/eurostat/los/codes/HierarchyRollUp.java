@@ -0,0 +1,186 @@
+package eu.europa.ec.eurostat.los.codes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import eu.europa.ec.eurostat.los.utils.Catalogue;
+import eu.europa.ec.eurostat.los.utils.CompressedOutput;
+import eu.europa.ec.eurostat.los.utils.DataCubeOntology;
+import eu.europa.ec.eurostat.los.utils.OutputFormat;
+
+/**
+ * The <code>HierarchyRollUp</code> class aggregates the observations of a cube
+ * up the hierarchy of one of its dimensions. In a single pass over the cube, the
+ * values of the leaf codes are added to all their ancestors, and the values of
+ * each code are added to its direct parent so that the totals published for the
+ * parents can be checked against the sum of their children. The aggregates are
+ * written as a separate data set, with the same dimensions and no attributes.
+ */
+public class HierarchyRollUp {
+	private static Logger logger = LogManager.getLogger(HierarchyRollUp.class);
+
+	private final ObservationCube cube;
+	private final String[] dimensions;
+	private final int dimension;
+	private final CodeHierarchy hierarchy;
+
+	/** Values by observation key: the codes of the other dimensions combined with the hierarchy index */
+	private final Map<Long, Long> aggregates = new HashMap<>();
+	private final Map<Long, Long> published = new HashMap<>();
+	private final Map<Long, Long> childrenSums = new HashMap<>();
+	private int unknownCodes = 0;
+
+	private HierarchyRollUp(ObservationCube cube, String dimension, CodeHierarchy hierarchy) {
+		this.cube = cube;
+		this.dimensions = cube.getDimensions();
+		this.dimension = cube.dimensionIndex(dimension);
+		this.hierarchy = hierarchy;
+	}
+
+	public static void main(String[] args) throws IOException {
+		Catalogue catalogue = Catalogue.fromArgs(args);
+		OutputFormat format = OutputFormat.fromArgs(args);
+		CompressedOutput compression = CompressedOutput.fromArgs(args);
+		Map<String, CodeHierarchy> hierarchies = new TreeMap<>();
+		hierarchies.put("NUTS", CodeHierarchy.fromNuts(catalogue.outputFile("cl-nuts.ttl")));
+		hierarchies.put("NACE_R2", CodeHierarchy.fromBroader(catalogue.outputFile("cl-nace_r2.ttl")));
+		hierarchies.put("PARTNER", CodeHierarchy.fromBroader(catalogue.outputFile("cl-partner.ttl")));
+
+		int ecarts = 0;
+		for (Catalogue.DataSet dataSet : catalogue.getPublishedDataSets()) {
+			String dataSetName = dataSet.getName();
+			CompiledDsd dsd = CompiledDsd.read(DataCubeMaker.dsdFile(dataSetName));
+			ObservationCube cube = ObservationCube.read(dataSet.getCsvFile(), dataSet.getMeasure(), dsd);
+			for (String dimension : cube.getDimensions()) {
+				if (!hierarchies.containsKey(dimension)) {
+					continue;
+				}
+				HierarchyRollUp rollUp = compute(cube, dimension, hierarchies.get(dimension));
+				ecarts += rollUp.checkTotals();
+				if (rollUp.aggregates.isEmpty()) {
+					continue;
+				}
+				String aggregateName = dataSetName + "-agg-" + dimension.toLowerCase();
+				try (OutputStream out = compression
+						.open(format.fileName(catalogue.outputFile("ds-tourism-" + aggregateName)))) {
+					rollUp.write(out, format, aggregateName, dsd);
+				}
+			}
+		}
+		logger.info(String.format("Agregation terminee, %d totaux differents de la somme de leurs enfants", ecarts));
+	}
+
+	/** Aggregates a cube up the hierarchy of a dimension, in one pass over the observations */
+	public static HierarchyRollUp compute(ObservationCube cube, String dimension, CodeHierarchy hierarchy) {
+		long debut = System.currentTimeMillis();
+		HierarchyRollUp rollUp = new HierarchyRollUp(cube, dimension, hierarchy);
+		int[] nodeOfCode = new int[cube.cardinality(rollUp.dimension)];
+		for (int code = 0; code < nodeOfCode.length; code++) {
+			nodeOfCode[code] = hierarchy.indexOf(cube.decode(rollUp.dimension, code));
+		}
+		for (int row = 0; row < cube.size(); row++) {
+			int node = nodeOfCode[cube.code(rollUp.dimension, row)];
+			if (node < 0) {
+				rollUp.unknownCodes++;
+				continue;
+			}
+			long base = rollUp.otherDimensionsKey(row) * hierarchy.size();
+			long value = cube.value(row);
+			rollUp.published.merge(base + node, value, Long::sum);
+			if (hierarchy.parent(node) >= 0) {
+				rollUp.childrenSums.merge(base + hierarchy.parent(node), value, Long::sum);
+			}
+			if (hierarchy.isLeaf(node)) {
+				for (int ancestor = hierarchy.parent(node); ancestor >= 0; ancestor = hierarchy.parent(ancestor)) {
+					rollUp.aggregates.merge(base + ancestor, value, Long::sum);
+				}
+			}
+		}
+		logger.info(String.format("Agregation de %s par %s : %d agregats, %d codes hors hierarchie, en %d ms",
+				cube.getMeasure(), dimension, rollUp.aggregates.size(), rollUp.unknownCodes,
+				System.currentTimeMillis() - debut));
+		return rollUp;
+	}
+
+	/** Combines the codes of the dimensions other than the aggregated one into a single number */
+	private long otherDimensionsKey(int row) {
+		long key = 0;
+		for (int d = 0; d < dimensions.length; d++) {
+			if (d != dimension) {
+				key = key * cube.cardinality(d) + cube.code(d, row);
+			}
+		}
+		return key;
+	}
+
+	/** Returns the values of all the dimensions of an observation key, the aggregated dimension included */
+	private Map<String, String> decodeKey(long key) {
+		Map<String, String> line = new HashMap<>();
+		line.put(dimensions[dimension], hierarchy.code((int) (key % hierarchy.size())));
+		long otherKey = key / hierarchy.size();
+		for (int d = dimensions.length - 1; d >= 0; d--) {
+			if (d != dimension) {
+				line.put(dimensions[d], cube.decode(d, (int) (otherKey % cube.cardinality(d))));
+				otherKey /= cube.cardinality(d);
+			}
+		}
+		return line;
+	}
+
+	/**
+	 * Compares each published total with the sum of the published values of its
+	 * direct children, for example FR with FR1, FRB... FRY.
+	 *
+	 * @return The number of totals which differ from the sum of their children.
+	 */
+	public int checkTotals() {
+		int ecarts = 0;
+		for (Map.Entry<Long, Long> childrenSum : childrenSums.entrySet()) {
+			Long total = published.get(childrenSum.getKey());
+			if (total != null && !total.equals(childrenSum.getValue())) {
+				ecarts++;
+				logger.warn(String.format("Total %s de %s : %d publie, %d pour la somme des enfants",
+						decodeKey(childrenSum.getKey()), cube.getMeasure(), total, childrenSum.getValue()));
+			}
+		}
+		logger.info(String.format("Controle des totaux de %s par %s : %d verifies, %d ecarts", cube.getMeasure(),
+				dimensions[dimension], childrenSums.size(), ecarts));
+		return ecarts;
+	}
+
+	/** Returns the aggregates by key, the key being the values of the dimensions separated by dots */
+	public Map<String, Long> getAggregates(CompiledDsd dsd) {
+		Map<String, Long> result = new TreeMap<>();
+		aggregates.forEach((key, value) -> result.put(dsd.observationKey(decodeKey(key)), value));
+		return result;
+	}
+
+	/** Writes the aggregates as the observations of a data set, without closing the stream */
+	public void write(OutputStream out, OutputFormat format, String dataSetName, CompiledDsd dsd) {
+		StreamRDF stream = format.openStream(out, DataCubeMaker.dataSetURI(dataSetName));
+		stream.start();
+		Model model = DataCubeMaker.createDataSetModel();
+		model.getNsPrefixMap().forEach(stream::prefix);
+		Resource dataSet = model.createResource(DataCubeMaker.dataSetURI(dataSetName), DataCubeOntology.DataSet);
+		DataCubeMaker.sendToStream(model, stream);
+		for (Map.Entry<Long, Long> aggregate : aggregates.entrySet()) {
+			Map<String, String> line = decodeKey(aggregate.getKey());
+			line.put(CompiledDsd.OBS_VALUE_COLUMN, String.valueOf(aggregate.getValue()));
+			model.removeAll();
+			DataCubeMaker.traiterLigne(model, dataSet,
+					Configuration.observationURI(dataSetName, dsd.observationKey(line)), line, dsd);
+			DataCubeMaker.sendToStream(model, stream);
+		}
+		stream.finish();
+		logger.info(String.format("Data set %s : %d observations agregees", dataSetName, aggregates.size()));
+	}
+}
@@ -0,0 +1,123 @@
+package eu.europa.ec.eurostat.los.codes;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import eu.europa.ec.eurostat.los.tourisme.DSDModelMaker;
+import eu.europa.ec.eurostat.los.utils.BuildManifest;
+import eu.europa.ec.eurostat.los.utils.Catalogue;
+import eu.europa.ec.eurostat.los.utils.JobScheduler;
+import eu.europa.ec.eurostat.los.utils.OutputFormat;
+
+/**
+ * The <code>IncrementalBuild</code> class runs the whole pipeline (code lists,
+ * DSDs, data sets and archives) but only rebuilds the steps whose input files
+ * changed since the previous run, according to the content hashes recorded in
+ * the build manifest. Since the outputs of a step are the inputs of the next
+ * ones, a change propagates downstream only if it actually changes a generated
+ * file.
+ */
+public class IncrementalBuild {
+	private static Logger logger = LogManager.getLogger(IncrementalBuild.class);
+
+	/** Manifest of the build, in the output directory: each output directory has its own */
+	private static final String MANIFEST_NAME = "build-manifest.properties";
+
+	private final BuildManifest manifest;
+	/** Options of the run which change the generated files, hashed with the inputs of each step */
+	private final String options;
+	private int rebuilt = 0;
+	private int skipped = 0;
+
+	private IncrementalBuild(BuildManifest manifest, String options) {
+		this.manifest = manifest;
+		this.options = options;
+	}
+
+	public static void main(String[] args) throws Exception {
+		long start = System.currentTimeMillis();
+		Catalogue catalogue = Catalogue.fromArgs(args);
+		OutputFormat format = OutputFormat.fromArgs(args);
+		// The data sets and archives are built without the main methods which read the options
+		DataCubeMaker.configurer(args);
+		ZipMaker.configurer(args);
+		// Hashed with the inputs of every step: a step whose output does not depend on an option is only rebuilt once more
+		String options = DataCubeMaker.options();
+		IncrementalBuild build = new IncrementalBuild(BuildManifest.load(catalogue.outputFile(MANIFEST_NAME)), options);
+
+		List<String> codelistInputs = new ArrayList<>();
+		codelistInputs.add(catalogue.getMetadataFile());
+		codelistInputs.addAll(catalogue.getAllCsvFiles());
+		build.etape("codelists", codelistInputs, () -> {
+			CodelistMaker.main(args);
+			return fichiersRdf("cl-", format.fileName(""));
+		});
+		// The DSDs of both measures are generated together, reading each DSD sheet once
+		build.etape("dsd", Arrays.asList(catalogue.getMetadataFile()), () -> {
+			DSDModelMaker.generer(args, DSDModelMaker.MEASURES);
+			return fichiersRdf("dsd-tourism-", format.fileName(""));
+		});
+
+		for (Catalogue.DataSet dataSet : catalogue.getDataSets()) {
+			String dataSetName = dataSet.getName();
+			String csvFile = dataSet.getCsvFile();
+			build.etape("ds-" + dataSetName, Arrays.asList(csvFile, DataCubeMaker.dsdFile(dataSetName)), () -> {
+				DataCubeMaker.traiterUneMeasure(dataSet.getType(), dataSet.getMeasure(), csvFile);
+				return Arrays.asList(DataCubeMaker.fichierEcrit(dataSetName));
+			});
+		}
+
+		for (Catalogue.DataSet dataSet : catalogue.getPublishedDataSets()) {
+			String type = dataSet.getType();
+			String mesure = dataSet.getSuffix();
+			List<String> inputs = ZipMaker.fichiers(type, mesure).stream().map(Path::toString)
+					.collect(Collectors.toList());
+			build.etape("zip-" + type + "-" + mesure, inputs, () -> {
+				ZipMaker.zip(type, mesure);
+				return Arrays.asList(ZipMaker.zipFile(type, mesure));
+			});
+		}
+
+		logger.info(String.format("Build incremental : %d etapes reconstruites, %d a jour, en %d ms", build.rebuilt,
+				build.skipped, System.currentTimeMillis() - start));
+	}
+
+	/**
+	 * Runs a step if its inputs changed or one of its outputs is missing, then
+	 * records the new state in the manifest.
+	 */
+	private void etape(String name, Collection<String> inputs, JobScheduler.Job job) throws Exception {
+		String inputsHash = BuildManifest.hash(inputs, options);
+		if (manifest.isUpToDate(name, inputsHash)) {
+			logger.info(String.format("Etape %s a jour", name));
+			skipped++;
+			return;
+		}
+		logger.info(String.format("Etape %s a reconstruire", name));
+		long start = System.currentTimeMillis();
+		Collection<String> outputs = job.run();
+		manifest.record(name, inputsHash, outputs);
+		manifest.save();
+		rebuilt++;
+		logger.info(String.format("Etape %s reconstruite en %d ms", name, System.currentTimeMillis() - start));
+	}
+
+	private static List<String> fichiersRdf(String prefix, String suffix) throws IOException {
+		try (Stream<Path> files = Files.list(Paths.get(Catalogue.get().getOutputDirectory()))) {
+			return files.map(Path::toString)
+					.filter(file -> Paths.get(file).getFileName().toString().startsWith(prefix) && file.endsWith(suffix))
+					.sorted().collect(Collectors.toList());
+		}
+	}
+}
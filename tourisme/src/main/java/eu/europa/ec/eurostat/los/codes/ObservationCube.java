@@ -0,0 +1,280 @@
+package eu.europa.ec.eurostat.los.codes;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import eu.europa.ec.eurostat.los.utils.Catalogue;
+import eu.europa.ec.eurostat.los.utils.MappedCsvReader;
+
+/**
+ * The <code>ObservationCube</code> class holds the observations of one measure
+ * in columns: each dimension (including the time period) is dictionary-encoded
+ * into an int array and the observation values are kept in a long array. It is
+ * built from the same CSV file and DSD as the data set, and answers slices and
+ * roll-ups by scanning the arrays, without building any RDF.
+ */
+public class ObservationCube {
+	private static Logger logger = LogManager.getLogger(ObservationCube.class);
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final String measure;
+	private final String[] dimensions;
+	private final Dictionary[] dictionaries;
+	private int[][] codes;
+	private long[] values;
+	private int size = 0;
+
+	private ObservationCube(String measure, String[] dimensions) {
+		this.measure = measure;
+		this.dimensions = dimensions;
+		dictionaries = new Dictionary[dimensions.length];
+		codes = new int[dimensions.length][INITIAL_CAPACITY];
+		for (int d = 0; d < dimensions.length; d++) {
+			dictionaries[d] = new Dictionary();
+		}
+		values = new long[INITIAL_CAPACITY];
+	}
+
+	public static void main(String[] args) throws IOException {
+		Catalogue.DataSet dataSet = Catalogue.fromArgs(args).getDataSet("nuts-nacer2-occni");
+		CompiledDsd dsd = CompiledDsd.read(DataCubeMaker.dsdFile(dataSet.getName()));
+		ObservationCube cube = read(dataSet.getCsvFile(), dataSet.getMeasure(), dsd);
+
+		// Sum of occ_ni by NUTS level 1 for C_RESID=FOR in 2017. NACE_R2 and TIME_PERIOD
+		// are fixed, since the file holds the I551TOI553 total next to its parts and several years
+		long debut = System.nanoTime();
+		Map<String, Long> sums = cube.slice().where("C_RESID", "FOR").where("NACE_R2", "I551TOI553")
+				.where(CompiledDsd.TIME_PERIOD_COLUMN, "2017").sumBy("NUTS", nuts -> nuts.length() == 3 ? nuts : null);
+		logger.info(String.format("occ_ni par NUTS 1 pour C_RESID=FOR, NACE_R2=I551TOI553 en 2017 en %d us : %s",
+				(System.nanoTime() - debut) / 1000, sums));
+	}
+
+	/**
+	 * Reads the rows of a measure of a CSV file. The dimensions of the cube are
+	 * the coded dimensions of the DSD followed by the time period.
+	 */
+	public static ObservationCube read(String csvFile, String measure, CompiledDsd dsd) throws IOException {
+		long debut = System.currentTimeMillis();
+		String[] dimensions = dsd.getDimensionColumns();
+		if (dsd.hasTimePeriod()) {
+			dimensions = ArrayUtils.add(dimensions, CompiledDsd.TIME_PERIOD_COLUMN);
+		}
+		ObservationCube cube = new ObservationCube(measure, dimensions);
+		try (MappedCsvReader reader = MappedCsvReader.open(csvFile)) {
+			int measureColumn = reader.column("MEASURE");
+			int valueColumn = reader.column(CompiledDsd.OBS_VALUE_COLUMN);
+			byte[] measureBytes = measure.getBytes(StandardCharsets.UTF_8);
+			int[] dimensionColumns = new int[dimensions.length];
+			for (int d = 0; d < dimensions.length; d++) {
+				dimensionColumns[d] = reader.column(dimensions[d]);
+				if (dimensionColumns[d] < 0) {
+					throw new IOException(String.format("Colonne %s absente de %s", dimensions[d], csvFile));
+				}
+			}
+			while (reader.next()) {
+				if (reader.getFieldCount() > valueColumn && reader.equalsBytes(measureColumn, measureBytes)) {
+					cube.add(reader, dimensionColumns, reader.getLong(valueColumn));
+				}
+			}
+		}
+		logger.info(String.format("Cube %s de %s : %d observations, dimensions %s, en %d ms", measure, csvFile,
+				cube.size, Arrays.toString(dimensions), System.currentTimeMillis() - debut));
+		return cube;
+	}
+
+	private void add(MappedCsvReader reader, int[] dimensionColumns, long value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size * 2);
+			for (int d = 0; d < codes.length; d++) {
+				codes[d] = Arrays.copyOf(codes[d], size * 2);
+			}
+		}
+		for (int d = 0; d < dimensions.length; d++) {
+			codes[d][size] = dictionaries[d].encode(reader.getInterned(dimensionColumns[d]));
+		}
+		values[size] = value;
+		size++;
+	}
+
+	public String getMeasure() {
+		return measure;
+	}
+
+	public String[] getDimensions() {
+		return dimensions.clone();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/** Returns the distinct values of a dimension, in order of appearance */
+	public List<String> getValues(String dimension) {
+		return new ArrayList<>(dictionaries[dimensionIndex(dimension)].values);
+	}
+
+	/** Returns the slice of all the observations, to be restricted by where */
+	public Slice slice() {
+		int[] filter = new int[dimensions.length];
+		Arrays.fill(filter, -1);
+		return new Slice(filter);
+	}
+
+	/** Code of the value of a dimension for an observation */
+	int code(int dimension, int row) {
+		return codes[dimension][row];
+	}
+
+	long value(int row) {
+		return values[row];
+	}
+
+	/** Value of a dimension having a code */
+	String decode(int dimension, int code) {
+		return dictionaries[dimension].values.get(code);
+	}
+
+	/** Number of distinct values of a dimension */
+	int cardinality(int dimension) {
+		return dictionaries[dimension].values.size();
+	}
+
+	int dimensionIndex(String dimension) {
+		int index = ArrayUtils.indexOf(dimensions, dimension);
+		if (index < 0) {
+			throw new IllegalArgumentException("Dimension inconnue : " + dimension);
+		}
+		return index;
+	}
+
+	/** Codes of the distinct values of a dimension */
+	private static class Dictionary {
+		private final Map<String, Integer> codes = new HashMap<>();
+		private final List<String> values = new ArrayList<>();
+
+		int encode(String value) {
+			Integer code = codes.get(value);
+			if (code == null) {
+				code = values.size();
+				codes.put(value, code);
+				values.add(value);
+			}
+			return code;
+		}
+
+		/** Returns the code of a value, -1 if it does not appear in the cube */
+		int code(String value) {
+			Integer code = codes.get(value);
+			return code == null ? -1 : code;
+		}
+	}
+
+	/**
+	 * A set of observations selected by fixing the values of some dimensions. The
+	 * conditions are compared as codes, so scanning a slice only reads int arrays.
+	 */
+	public class Slice {
+		/** Required code per dimension, -1 for any value and -2 for a value absent from the cube */
+		private final int[] filter;
+
+		private Slice(int[] filter) {
+			this.filter = filter;
+		}
+
+		/** Returns the slice restricted to the observations having a value for a dimension */
+		public Slice where(String dimension, String value) {
+			int d = dimensionIndex(dimension);
+			int code = dictionaries[d].code(value);
+			int[] restricted = filter.clone();
+			restricted[d] = code < 0 || (filter[d] != -1 && filter[d] != code) ? -2 : code;
+			return new Slice(restricted);
+		}
+
+		public int count() {
+			int count = 0;
+			for (int row = 0; row < size; row++) {
+				if (matches(row)) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		public long sum() {
+			long sum = 0;
+			for (int row = 0; row < size; row++) {
+				if (matches(row)) {
+					sum += values[row];
+				}
+			}
+			return sum;
+		}
+
+		/** Returns the sums of the slice by value of a dimension */
+		public Map<String, Long> sumBy(String dimension) {
+			return sumBy(dimension, Function.identity());
+		}
+
+		/**
+		 * Rolls the slice up along a dimension: each value of the dimension is mapped
+		 * to a group, or to null to leave its observations out, and the values are
+		 * summed by group. The mapping is applied once per distinct value, not per
+		 * observation.
+		 */
+		public Map<String, Long> sumBy(String dimension, Function<String, String> groupOf) {
+			int d = dimensionIndex(dimension);
+			List<String> dimensionValues = dictionaries[d].values;
+			List<String> groups = new ArrayList<>();
+			int[] groupOfCode = new int[dimensionValues.size()];
+			for (int code = 0; code < groupOfCode.length; code++) {
+				String group = groupOf.apply(dimensionValues.get(code));
+				if (group == null) {
+					groupOfCode[code] = -1;
+				} else {
+					if (!groups.contains(group)) {
+						groups.add(group);
+					}
+					groupOfCode[code] = groups.indexOf(group);
+				}
+			}
+			long[] sums = new long[groups.size()];
+			boolean[] found = new boolean[groups.size()];
+			int[] dimensionCodes = codes[d];
+			for (int row = 0; row < size; row++) {
+				int group = groupOfCode[dimensionCodes[row]];
+				if (group >= 0 && matches(row)) {
+					sums[group] += values[row];
+					found[group] = true;
+				}
+			}
+			Map<String, Long> result = new TreeMap<>();
+			for (int group = 0; group < sums.length; group++) {
+				if (found[group]) {
+					result.put(groups.get(group), sums[group]);
+				}
+			}
+			return result;
+		}
+
+		private boolean matches(int row) {
+			for (int d = 0; d < filter.length; d++) {
+				if (filter[d] != -1 && codes[d][row] != filter[d]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package eu.europa.ec.eurostat.los.codes;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The <code>ObservationKeyIndex</code> class records, for each observation key
+ * of a data set, a fingerprint of the observation value and attributes. The
+ * index of the previous run tells which observations are new or changed, so an
+ * incremental export only emits those.
+ */
+public class ObservationKeyIndex {
+	private static Logger logger = LogManager.getLogger(ObservationKeyIndex.class);
+
+	private final Map<String, String> previous;
+	private final Map<String, String> current = new HashMap<>();
+	private int changed = 0;
+
+	private ObservationKeyIndex(Map<String, String> previous) {
+		this.previous = previous;
+	}
+
+	/**
+	 * Loads the index of the previous run. A missing file gives an empty index, so
+	 * all the observations are considered new.
+	 */
+	public static ObservationKeyIndex load(String indexFile) throws IOException {
+		Map<String, String> previous = new HashMap<>();
+		if (new File(indexFile).exists()) {
+			try (BufferedReader reader = Files.newBufferedReader(Paths.get(indexFile), StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					int tab = line.indexOf('\t');
+					if (tab > 0) {
+						previous.put(line.substring(0, tab), line.substring(tab + 1));
+					}
+				}
+			}
+		}
+		return new ObservationKeyIndex(previous);
+	}
+
+	/**
+	 * Records an observation of the current run.
+	 * 
+	 * @return true if the key is new or its fingerprint differs from the previous
+	 *         run.
+	 */
+	public boolean record(String key, String fingerprint) {
+		current.put(key, fingerprint);
+		if (fingerprint.equals(previous.get(key))) {
+			return false;
+		}
+		changed++;
+		return true;
+	}
+
+	/** Number of keys of the previous run which were not met in the current run */
+	public int removedCount() {
+		int removed = 0;
+		for (String key : previous.keySet()) {
+			if (!current.containsKey(key)) {
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/** Writes the index of the current run, which becomes the reference of the next one */
+	public void save(String indexFile) throws IOException {
+		File file = new File(indexFile);
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+		try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			for (Map.Entry<String, String> entry : current.entrySet()) {
+				writer.write(entry.getKey());
+				writer.write('\t');
+				writer.write(entry.getValue());
+				writer.newLine();
+			}
+		}
+		logger.info(String.format("Index %s : %d observations, %d nouvelles ou modifiees, %d supprimees", indexFile,
+				current.size(), changed, removedCount()));
+	}
+}
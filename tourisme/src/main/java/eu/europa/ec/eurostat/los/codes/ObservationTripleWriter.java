@@ -0,0 +1,152 @@
+package eu.europa.ec.eurostat.los.codes;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.vocabulary.RDF;
+
+import eu.europa.ec.eurostat.los.utils.DataCubeOntology;
+
+/**
+ * The <code>ObservationTripleWriter</code> class converts CSV rows to the
+ * triples of their observation at the level of Jena nodes, for the streaming
+ * conversions. It gives the same triples as DataCubeMaker.traiterLigne, without
+ * the Model API: the predicate nodes are created once, the code items and time
+ * periods come from caches, and so do the literals of the values seen last.
+ * Rows thus cost the same small number of objects, whatever the size of the
+ * data set. A writer is used by one thread.
+ */
+public class ObservationTripleWriter {
+
+	private static final Node TYPE = RDF.type.asNode();
+	private static final Node OBSERVATION = DataCubeOntology.Observation.asNode();
+	private static final Node DATA_SET = DataCubeOntology.dataSet.asNode();
+
+	/** Number of value literals kept, the cache is emptied beyond */
+	private static final int MAX_CACHED_VALUES = 4096;
+
+	private final CompiledDsd dsd;
+	private final Node dataSet;
+	private final Node[] attributeProperties;
+	private final Node[] dimensionProperties;
+	private final Node timePeriodProperty;
+	private final Node measureProperty;
+	private final Map<String, Node> timePeriods = new HashMap<>();
+	private final Map<String, Node> values = new HashMap<>();
+
+	/** Triples of the last row converted */
+	private Triple[] triples = new Triple[16];
+	private int size = 0;
+	private long count = 0;
+
+	public ObservationTripleWriter(CompiledDsd dsd, String dataSetURI) {
+		this.dsd = dsd;
+		this.dataSet = NodeFactory.createURI(dataSetURI);
+		attributeProperties = nodes(dsd.attributeProperties);
+		dimensionProperties = nodes(dsd.dimensionProperties);
+		timePeriodProperty = dsd.timePeriodProperty == null ? null : dsd.timePeriodProperty.asNode();
+		measureProperty = dsd.measureProperty.asNode();
+	}
+
+	private static Node[] nodes(Property[] properties) {
+		Node[] nodes = new Node[properties.length];
+		for (int i = 0; i < properties.length; i++) {
+			nodes[i] = properties[i].asNode();
+		}
+		return nodes;
+	}
+
+	/** Converts a row and sends the triples of its observation to a stream */
+	public void write(String observationURI, Map<String, String> nextLine, StreamRDF stream) {
+		convertir(observationURI, nextLine);
+		envoyer(stream);
+	}
+
+	/**
+	 * Converts a row to the triples of its observation, kept until the next row.
+	 *
+	 * @throws NumberFormatException If OBS_VALUE is not a long, as traiterLigne.
+	 */
+	public void convertir(String observationURI, Map<String, String> nextLine) {
+		size = 0;
+		Node observation = NodeFactory.createURI(observationURI);
+		add(observation, TYPE, OBSERVATION);
+		add(observation, DATA_SET, dataSet);
+		for (int i = 0; i < attributeProperties.length; i++) {
+			if (nextLine.containsKey(dsd.attributeColumns[i])) {
+				add(observation, attributeProperties[i],
+						dsd.attributeItems[i].item(nextLine.get(dsd.attributeColumns[i])).asNode());
+			}
+		}
+		for (int i = 0; i < dimensionProperties.length; i++) {
+			add(observation, dimensionProperties[i],
+					dsd.dimensionItems[i].item(nextLine.get(dsd.dimensionColumns[i])).asNode());
+		}
+		if (timePeriodProperty != null) {
+			add(observation, timePeriodProperty, timePeriod(nextLine.get(CompiledDsd.TIME_PERIOD_COLUMN)));
+		}
+		add(observation, measureProperty, value(nextLine.get(CompiledDsd.OBS_VALUE_COLUMN)));
+	}
+
+	/** Sends the triples of the last row converted to a stream */
+	public void envoyer(StreamRDF stream) {
+		for (int i = 0; i < size; i++) {
+			stream.triple(triples[i]);
+		}
+		count += size;
+	}
+
+	/** Returns the number of triples sent since the creation of the writer */
+	public long getCount() {
+		return count;
+	}
+
+	private void add(Node subject, Node predicate, Node object) {
+		if (size == triples.length) {
+			triples = Arrays.copyOf(triples, size * 2);
+		}
+		triples[size++] = Triple.create(subject, predicate, object);
+	}
+
+	private Node timePeriod(String year) {
+		Node node = timePeriods.get(year);
+		if (node == null) {
+			node = NodeFactory.createLiteral(year, XSDDatatype.XSDgYear);
+			timePeriods.put(year, node);
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the node of the value of a row as traiterLigne writes it: an xsd:int
+	 * in the form createTypedLiteral(Integer) gives, or an xsd:long beyond the
+	 * range of an int. The nodes of the values seen last are kept, so that the
+	 * repeated values of a data set share their node.
+	 */
+	private Node value(String text) {
+		Node node = values.get(text);
+		if (node == null) {
+			long value = Long.parseLong(text);
+			node = NodeFactory.createLiteral(isCanonical(text) ? text : Long.toString(value),
+					value == (int) value ? XSDDatatype.XSDint : XSDDatatype.XSDlong);
+			if (values.size() >= MAX_CACHED_VALUES) {
+				values.clear();
+			}
+			values.put(text, node);
+		}
+		return node;
+	}
+
+	/** No sign, no leading zero: the form Long.toString gives */
+	private static boolean isCanonical(String text) {
+		char first = text.charAt(0);
+		return first != '+' && !(first == '-' && text.charAt(1) == '0') && !(first == '0' && text.length() > 1);
+	}
+}
@@ -0,0 +1,74 @@
+package eu.europa.ec.eurostat.los.codes;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import eu.europa.ec.eurostat.los.tourisme.DSDModelMaker;
+import eu.europa.ec.eurostat.los.utils.GeneratedModels;
+import eu.europa.ec.eurostat.los.utils.JobScheduler;
+import eu.europa.ec.eurostat.los.utils.Tdb2Sink;
+
+/**
+ * The <code>Pipeline</code> class runs the whole generation in a single JVM:
+ * code lists, DSDs, data sets, their validation and archives, in that order.
+ * Each stage receives the arguments of the run, so the options of the stages
+ * (format, threads, selection in the catalogue...) apply to all of them. The
+ * code lists and DSDs written by the first stages are kept in memory and given
+ * to the later ones instead of being parsed again, and the Excel workbook is
+ * read only once. The run stops at the first stage which has failed jobs.
+ * <p>
+ * With the TDB2 option, a single database is opened for the run: the code lists
+ * and data sets are loaded into it, the DSDs are written as files as usual, and
+ * the validation and archives, which read the data set files, are skipped.
+ */
+public class Pipeline {
+	private static Logger logger = LogManager.getLogger(Pipeline.class);
+
+	private interface Stage {
+		void run(String[] args, Tdb2Sink tdb2) throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Tdb2Sink tdb2 = Tdb2Sink.fromArgs(args);
+		Map<String, Stage> stages = new LinkedHashMap<>();
+		stages.put("listes de codes", CodelistMaker::generer);
+		stages.put("DSD", (stageArgs, sink) -> DSDModelMaker.main(stageArgs));
+		stages.put("data sets", DataCubeMaker::generer);
+		if (tdb2 == null) {
+			stages.put("validation", (stageArgs, sink) -> CubeValidator.main(stageArgs));
+			stages.put("archives", (stageArgs, sink) -> ZipMaker.main(stageArgs));
+		} else {
+			logger.info("Chargement TDB2 : pas de validation ni d'archives");
+		}
+
+		GeneratedModels.enable();
+		Map<String, Long> durees = new LinkedHashMap<>();
+		long debut = System.currentTimeMillis();
+		try {
+			for (Map.Entry<String, Stage> stage : stages.entrySet()) {
+				logger.info("Etape " + stage.getKey());
+				long debutEtape = System.currentTimeMillis();
+				try {
+					stage.getValue().run(args, tdb2);
+				} catch (JobScheduler.JobFailureException e) {
+					logger.error(String.format("Etape %s : %s, arret du pipeline", stage.getKey(), e.getMessage()));
+					throw e;
+				}
+				durees.put(stage.getKey(), System.currentTimeMillis() - debutEtape);
+			}
+		} finally {
+			for (Map.Entry<String, Long> duree : durees.entrySet()) {
+				logger.info(String.format("%-16s %8d ms", duree.getKey(), duree.getValue()));
+			}
+			logger.info(String.format("Pipeline : %d etapes sur %d en %d ms, %d modeles relus en memoire",
+					durees.size(), stages.size(), System.currentTimeMillis() - debut, GeneratedModels.getHits()));
+			GeneratedModels.disable();
+			if (tdb2 != null) {
+				tdb2.close();
+			}
+		}
+	}
+}
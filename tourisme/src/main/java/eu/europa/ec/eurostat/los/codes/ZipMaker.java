@@ -4,50 +4,122 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import eu.europa.ec.eurostat.los.utils.Catalogue;
+import eu.europa.ec.eurostat.los.utils.CompressedOutput;
+import eu.europa.ec.eurostat.los.utils.JobScheduler;
+import eu.europa.ec.eurostat.los.utils.OutputFormat;
+import eu.europa.ec.eurostat.los.utils.RunMetrics;
+
 public class ZipMaker {
 	private static Logger logger = LogManager.getLogger(ZipMaker.class);
 
-	private static final String RDF_DIRECTORY = "src/main/resources/rdf/";
+	/** Option de main : mode rapide, les listes de codes communes a toutes les archives ne sont compressees qu'une fois */
+	public static final String OPTION_FAST = "-fast";
+
+	/** Writer partage par toutes les archives en mode rapide, null sinon */
+	private static ZipWriter zipWriterPartage = null;
+
+	/** Format and compression of the files of the run, the only ones put into the archives */
+	private static OutputFormat format = OutputFormat.TURTLE;
+	private static CompressedOutput compression = CompressedOutput.NONE;
 
 	public static void main(String[] args) throws IOException {
-		zip("nuts-nacer2", "occarr");
-		zip("nuts-nacer2", "occni");
+		JobScheduler scheduler = JobScheduler.fromArgs(args);
+		configurer(args);
+		for (Catalogue.DataSet dataSet : Catalogue.fromArgs(args).getPublishedDataSets()) {
+			soumettre(scheduler, dataSet.getType(), dataSet.getSuffix());
+		}
+		try {
+			scheduler.runAll();
+			if (zipWriterPartage != null) {
+				logger.info(String.format("Mode rapide : %d octets lus", zipWriterPartage.getBytesRead()));
+			}
+		} finally {
+			// The metrics of the archives built are reported even if others failed
+			RunMetrics.export(args);
+		}
+	}
 
-		//zip("degurba", "occarr");
-		zip("degurba", "occni");
+	/**
+	 * Reads the options of the archives from the arguments of a main method, for
+	 * the callers of zip which do not go through main.
+	 */
+	static void configurer(String[] args) {
+		format = OutputFormat.fromArgs(args);
+		compression = CompressedOutput.fromArgs(args);
+		zipWriterPartage = ArrayUtils.contains(args, OPTION_FAST) ? new ZipWriter() : null;
+	}
 
-		zip("partner", "occarr");
-		zip("partner", "occni");
+	private static void soumettre(JobScheduler scheduler, String type, String mesure) {
+		String dataSetName = type + "-" + mesure;
+		scheduler.submit(dataSetName, () -> {
+			long debut = System.nanoTime();
+			zip(type, mesure);
+			RunMetrics.timer(RunMetrics.ARCHIVING, dataSetName).addSince(debut);
+			RunMetrics.counter(RunMetrics.ARCHIVE_BYTES, dataSetName).add(Files.size(Paths.get(zipFile(type, mesure))));
+		}, zipFile(type, mesure));
+	}
 
-		//zip("terrtypo", "occarr");
-		zip("terrtypo", "occni");
+	static String zipFile(String type, String mesure) {
+		return Catalogue.get().outputFile(type + "-" + mesure + ".zip");
 	}
 
-	private static void zip(String type, String mesure) throws IOException {
+	static void zip(String type, String mesure) throws IOException {
 		logger.info(String.format("zip de %s %s", type, mesure));
 
-		
-		List<Path> atrackFileNames = Files.list(Paths.get(RDF_DIRECTORY)).filter(s -> filtrer(s, type, mesure))
-				.collect(Collectors.toList());
+		List<Path> fichiers = fichiers(type, mesure);
+		if (zipWriterPartage != null) {
+			Set<Path> codeLists = fichiers.stream().filter(ZipMaker::estListeDeCodes).collect(Collectors.toSet());
+			zipWriterPartage.createZip(fichiers, codeLists, zipFile(type, mesure));
+			return;
+		}
+		if (fichiers.stream().anyMatch(s -> CompressedOutput.isZipEntry(s.toFile()))) {
+			// Only the high-throughput mode can copy compressed entries
+			new ZipWriter().createZip(fichiers, Collections.emptySet(), zipFile(type, mesure));
+			return;
+		}
 		ZipWriter zw = new ZipWriter();
-		zw.createZip(atrackFileNames, RDF_DIRECTORY + type + "-" + mesure+".zip");
+		zw.createZip(fichiers, zipFile(type, mesure));
+
+	}
+
+	/**
+	 * Returns the code lists, DSD and data set files which go into the archive of a
+	 * data set. Only the files of the format of the run are taken, and the data
+	 * sets in its compression, so that the files left by a run with other options
+	 * are not archived too.
+	 */
+	static List<Path> fichiers(String type, String mesure) throws IOException {
+		try (Stream<Path> files = Files.list(Paths.get(Catalogue.get().getOutputDirectory()))) {
+			return files.filter(s -> filtrer(s, type, mesure)).sorted().collect(Collectors.toList());
+		}
+	}
 
+	private static boolean estListeDeCodes(Path s) {
+		return s.getFileName().toString().startsWith("cl");
 	}
 
 	private static boolean filtrer(Path s, String type, String mesure) {
-		logger.info(s.getFileName());
-		logger.info(StringUtils.containsIgnoreCase(s.getFileName().toString(), type));
-		logger.info(StringUtils.containsIgnoreCase(s.getFileName().toString(), mesure));
-		return !FilenameUtils.isExtension(s.getFileName().toString(), "zip") && (s.getFileName().toString().startsWith("cl") || (StringUtils.containsIgnoreCase(s.getFileName().toString(), type)
-				&& StringUtils.containsIgnoreCase(s.getFileName().toString(), mesure)));
+		logger.debug(s.getFileName());
+		String name = s.getFileName().toString();
+		if (estListeDeCodes(s) || name.startsWith("dsd-")) {
+			// Code lists and DSDs are written without compression
+			return name.endsWith(format.fileName("")) && (estListeDeCodes(s)
+					|| StringUtils.containsIgnoreCase(name, type) && StringUtils.containsIgnoreCase(name, mesure));
+		}
+		return name.endsWith(compression.fileName(format.fileName(""))) && StringUtils.containsIgnoreCase(name, type)
+				&& StringUtils.containsIgnoreCase(name, mesure);
 	}
 
 }
@@ -1,19 +1,40 @@
 package eu.europa.ec.eurostat.los.codes;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.FileTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import eu.europa.ec.eurostat.los.utils.CompressedOutput;
+
 public class ZipWriter {
 	private static Logger logger = LogManager.getLogger(ZipWriter.class);
 	 /**
@@ -62,7 +83,7 @@ public class ZipWriter {
             entry.setComment("Created by TheCodersCorner");
             zipStream.putNextEntry(entry);
 
-            logger.info("Generated new entry for: " + inputFileName);
+            logger.debug("Generated new entry for: " + inputFileName);
 
             // Now we copy the existing file into the zip archive. To do
             // this we write into the zip stream, the call to putNextEntry
@@ -78,7 +99,7 @@ public class ZipWriter {
                 written += amountRead;
             }
 
-            logger.info("Stored " + written + " bytes to " + inputFileName);
+            logger.debug("Stored " + written + " bytes to " + inputFileName);
 
 
         }
@@ -87,6 +108,122 @@ public class ZipWriter {
         }
     }
 
+    /** Size of the buffers of the high-throughput mode */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /** Compressed entries of the shared files, reused by every archive built by this writer */
+    private final Map<Path, CompressedEntry> sharedEntries = new ConcurrentHashMap<>();
+
+    /** Bytes read from the disk by the high-throughput mode */
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    /**
+     * High-throughput variant of createZip. Files are read through a FileChannel
+     * with large buffers, and the files listed as shared (typically the code lists,
+     * which go into every archive) are compressed only once per ZipWriter: their
+     * compressed bytes are copied as is into the following archives. A ZipWriter
+     * can be used by several threads to build different archives at the same time.
+     * Files written as zip entries by the generators (see CompressedOutput) are
+     * copied without being decompressed.
+     */
+    public void createZip(List<Path> files, Collection<Path> sharedFiles, String outputZip) throws IOException {
+        try (ZipArchiveOutputStream zipStream = new ZipArchiveOutputStream(
+                new BufferedOutputStream(new FileOutputStream(outputZip), BUFFER_SIZE))) {
+            for (Path file : files) {
+                if (CompressedOutput.isZipEntry(file.toFile())) {
+                    // Entries compressed by the generators are copied without being inflated
+                    try (ZipFile source = new ZipFile(file.toFile())) {
+                        source.copyRawEntries(zipStream, entry -> true);
+                    }
+                    bytesRead.addAndGet(Files.size(file));
+                } else if (sharedFiles.contains(file)) {
+                    CompressedEntry compressed = sharedEntries.computeIfAbsent(file, this::compressShared);
+                    zipStream.addRawArchiveEntry(compressed.newEntry(), new ByteArrayInputStream(compressed.data));
+                } else {
+                    zipStream.putArchiveEntry(newEntry(file));
+                    copy(file, zipStream);
+                    zipStream.closeArchiveEntry();
+                }
+            }
+        }
+        logger.info("Zip file created in " + outputZip);
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    private static ZipArchiveEntry newEntry(Path file) {
+        ZipArchiveEntry entry = new ZipArchiveEntry(file.toFile().getName());
+        entry.setTime(file.toFile().lastModified());
+        entry.setComment("Created by TheCodersCorner");
+        return entry;
+    }
+
+    private void copy(Path file, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            int read;
+            while ((read = channel.read(buffer)) > 0) {
+                out.write(buffer.array(), 0, read);
+                bytesRead.addAndGet(read);
+                buffer.clear();
+            }
+        }
+    }
+
+    private CompressedEntry compressShared(Path file) {
+        try {
+            return compress(file);
+        } catch (IOException e) {
+            throw new ZipParsingException("Unable to compress " + file, e);
+        }
+    }
+
+    /** Deflates a whole file in memory, as it will be stored in the archives */
+    private CompressedEntry compress(Path file) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        CRC32 crc = new CRC32();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try (DeflaterOutputStream deflaterStream = new DeflaterOutputStream(compressed, deflater, BUFFER_SIZE)) {
+            copy(file, new FilterOutputStream(deflaterStream) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    crc.update(b, off, len);
+                    out.write(b, off, len);
+                }
+            });
+        } finally {
+            deflater.end();
+        }
+        logger.debug("Compressed shared entry " + file);
+        return new CompressedEntry(file, compressed.toByteArray(), Files.size(file), crc.getValue());
+    }
+
+    /** A shared file deflated once, with what is needed to copy it raw into an archive */
+    private static class CompressedEntry {
+        private final Path file;
+        private final byte[] data;
+        private final long size;
+        private final long crc;
+
+        CompressedEntry(Path file, byte[] data, long size, long crc) {
+            this.file = file;
+            this.data = data;
+            this.size = size;
+            this.crc = crc;
+        }
+
+        ZipArchiveEntry newEntry() {
+            ZipArchiveEntry entry = ZipWriter.newEntry(file);
+            entry.setMethod(ZipEntry.DEFLATED);
+            entry.setSize(size);
+            entry.setCompressedSize(data.length);
+            entry.setCrc(crc);
+            return entry;
+        }
+    }
+
     /**
      * We want to let a checked exception escape from a lambda that does not
      * allow exceptions. The only way I can see of doing this is to wrap the
@@ -0,0 +1,292 @@
+package eu.europa.ec.eurostat.los.tourisme;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.DC;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.XSD;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import eu.europa.ec.eurostat.los.utils.Catalogue;
+import eu.europa.ec.eurostat.los.utils.DataCubeOntology;
+import eu.europa.ec.eurostat.los.utils.GeneratedModels;
+import eu.europa.ec.eurostat.los.utils.JobScheduler;
+import eu.europa.ec.eurostat.los.utils.MetadataWorkbook;
+import eu.europa.ec.eurostat.los.utils.MetadataWorkbook.MetadataRow;
+import eu.europa.ec.eurostat.los.utils.OutputFormat;
+
+/**
+ * The <code>DSDModelMaker</code> class creates the Data Cube Data Structure
+ * Definitions of the tourism data sets of the catalogue, one per data set from
+ * the DSD sheet of its source in the metadata workbook. The measures are
+ * described by the {@link #MEASURES} table. Each sheet is read once, and the
+ * dimension and attribute properties it declares are built once in a registry
+ * shared by all the DSDs of the run.
+ */
+public class DSDModelMaker {
+	private static Logger logger = LogManager.getLogger(DSDModelMaker.class);
+
+	/** Prefix mappings */
+	public static Map<String, String> DSD_PREFIXES = new HashMap<String, String>();
+	static {
+		DSD_PREFIXES.put("qb", DataCubeOntology.getURI());
+		DSD_PREFIXES.put("rdfs", RDFS.getURI());
+		DSD_PREFIXES.put("dc", DC.getURI());
+		DSD_PREFIXES.put("dc", DCTerms.getURI());
+		DSD_PREFIXES.put("xsd", XSD.getURI());
+	}
+
+	private static final String BASE_URI = "http://id.linked-open-statistics.org/plosh/temp5/meta/";
+	private static final String TOURISME_URI = BASE_URI + "demo/tourism/";
+
+	/** Measure of a family of DSDs, the suffix being the end of the DSD names, for example occarr */
+	public static class MeasureDescriptor {
+		private final String suffix;
+		private final String id;
+		private final String uri;
+		private final String name;
+		private final String description;
+
+		public MeasureDescriptor(String suffix, String id, String uri, String name, String description) {
+			this.suffix = suffix;
+			this.id = id;
+			this.uri = uri;
+			this.name = name;
+			this.description = description;
+		}
+
+		public String getSuffix() {
+			return suffix;
+		}
+	}
+
+	public static final MeasureDescriptor OCCARR = new MeasureDescriptor("occarr", "TOURISM_OCCARR",
+			"http://id.insee.fr/meta/mesure/tourism_occarr", "Arrivals of residents and non-residents",
+			"An arrival is defined as a person (tourist) who arrives at a tourist accommodation establishment and checks in or arrives at non-rented accommodation. But in the scope of the Regulation concerning European statistics on tourism, this variable is not collected for the latter type of accommodation.\r\n"
+					+ "\r\n"
+					+ "Statistically there is not much difference if, instead of arrivals, departures are counted. No age limit is applied: children are counted as well as adults, even in the case when the overnight stays of children might be free of charge. Arrivals are registered by country of residence of the guest and by month. The arrivals of same-day visitors spending only a few hours during the day (no overnight stay, the date of arrival and departure are the same) at the establishment are excluded from accommodation statistics.");
+
+	public static final MeasureDescriptor OCCNI = new MeasureDescriptor("occni", "TOURISM_OCCNI",
+			"http://id.insee.fr/meta/mesure/tourism_occni", "Number of nigths spent by residents and non-residents",
+			"A night spent (or overnight stay) is each night a guest / tourist (resident or non-resident) actually spends (sleeps or stays) in a tourist accommodation establishment or non-rented accommodation.\r\n"
+					+ "\r\n"
+					+ "Overnight stays are calculated by country of residence of the guest and by month. Normally the date of arrival is different from the date of departure but persons arriving after midnight and leaving on the same day are included in overnight stays. A person should not be registered in two or more accommodation establishments at the same time.");
+
+	/** Measures for which DSDs are generated */
+	public static final List<MeasureDescriptor> MEASURES = Arrays.asList(OCCARR, OCCNI);
+
+	/** Dimension and attribute properties, with their concepts, by role and concept code */
+	private static final Map<String, Model> COMPONENTS = new ConcurrentHashMap<>();
+
+	private static MetadataWorkbook wb = null;
+	private static OutputFormat format = OutputFormat.TURTLE;
+
+	/** Naming constants and methods for other components */
+	public static String conceptSchemeURI(String conceptCode, String conceptName) {
+		return "http://id.linked-open-statistics.org/codes/" + conceptName;
+	}
+
+	public static String codeConceptURI(String conceptCode, String conceptName) {
+		return "http://id.linked-open-statistics.org/concepts/" + StringUtils.capitalize(conceptName);
+	}
+
+	// A very basic implementation for now
+	public static String conceptURI(String conceptCode) {
+		return "http://id.linked-open-statistics.org/concepts/" + conceptCode;
+	}
+
+	public static String componentURI(String componentType, String conceptCode) { // Type should be 'attribute',
+																					// 'dimension' or 'measure' but no
+																					// control is made
+		return "http://id.insee.fr/meta/" + componentType + "/" + conceptCode.toLowerCase();
+	}
+
+	public static String dsdURI(String dsdId) {
+		return TOURISME_URI + "dsd/" + dsdId;
+	}
+
+	/** Generates the DSDs of all the measures */
+	public static void main(String[] args) throws Exception {
+		generer(args, MEASURES);
+	}
+
+	/**
+	 * Generates the DSDs of some measures for the data sets selected in the
+	 * catalogue, from the DSD sheets of their sources, reading each sheet once.
+	 * The workbook and sheets are described by the catalogue.
+	 */
+	public static void generer(String[] args, List<MeasureDescriptor> measures) throws Exception {
+		Catalogue catalogue = Catalogue.fromArgs(args);
+		wb = MetadataWorkbook.load(catalogue.getMetadataFile());
+		format = OutputFormat.fromArgs(args);
+		JobScheduler scheduler = JobScheduler.fromArgs(args);
+
+		Map<String, List<MetadataRow>> sheets = new HashMap<>();
+		int dsds = 0;
+		for (Catalogue.DataSet dataSet : catalogue.getDataSets()) {
+			for (MeasureDescriptor measure : measures) {
+				if (!measure.suffix.equals(dataSet.getSuffix())) {
+					continue;
+				}
+				if (!sheets.containsKey(dataSet.getDsdSheet())) {
+					sheets.put(dataSet.getDsdSheet(), componentRows(dataSet.getDsdSheet()));
+				}
+				List<MetadataRow> components = sheets.get(dataSet.getDsdSheet());
+				String dsdName = dataSet.getName();
+				scheduler.submit(dsdName, () -> genererDsd(dsdName, components, measure), dsdFile(dsdName));
+				dsds++;
+			}
+		}
+		scheduler.runAll();
+		logger.info(String.format("%d DSD generees pour %d mesures et %d feuilles, %d composantes construites", dsds,
+				measures.size(), sheets.size(), COMPONENTS.size()));
+	}
+
+	private static void genererDsd(String dsdName, List<MetadataRow> components, MeasureDescriptor measure)
+			throws IOException {
+		Model dsdModel = getDsdModel(dsdName, components, measure);
+		try (FileOutputStream out = new FileOutputStream(dsdFile(dsdName))) {
+			format.write(out, dsdModel, dsdURI(dsdName));
+		}
+		GeneratedModels.register(dsdFile(dsdName), dsdModel);
+	}
+
+	static String dsdFile(String dsdName) {
+		return format.fileName(Catalogue.get().outputFile("dsd-tourism-" + dsdName));
+	}
+
+	/** Returns the rows of a DSD sheet which describe a component, after the two header rows */
+	private static List<MetadataRow> componentRows(String sheetName) throws IOException {
+		if (wb == null) {
+			wb = MetadataWorkbook.load(Catalogue.get().getMetadataFile());
+		}
+		List<MetadataRow> rows = new ArrayList<>();
+		Iterator<MetadataRow> rowIterator = wb.getSheet(sheetName).getRows().iterator();
+		rowIterator.next();
+		rowIterator.next();
+		rowIterator.forEachRemaining(rows::add);
+		return rows;
+	}
+
+	/**
+	 * Returns a Jena Model containing the DSD of a measure for a DSD sheet, and its
+	 * components (including concepts and code lists).
+	 */
+	public static Model getDsdModel(String sheetName, String dsdName, MeasureDescriptor measure) throws IOException {
+		return getDsdModel(dsdName, componentRows(sheetName), measure);
+	}
+
+	private static Model getDsdModel(String dsdName, List<MetadataRow> components, MeasureDescriptor measure) {
+		Model dsdModel = ModelFactory.createDefaultModel();
+		dsdModel.setNsPrefixes(DSD_PREFIXES);
+
+		// Creation of the DSD
+		Resource dsd = dsdModel.createResource(dsdURI(dsdName), DataCubeOntology.DataStructureDefinition);
+		dsd.addProperty(RDFS.label, dsdModel.createLiteral(
+				"Tourism industries  -  Annual occupancy of tourist accommodation establishments - Nights spent by residents and non-residents",
+				"en"));
+		dsd.addProperty(DC.description,
+				dsdModel.createLiteral("Nights by NUTS, NACE_R2 and Country of residence", "en"));
+		dsd.addProperty(DCTerms.identifier, dsdModel.createLiteral("DSD-TOURISM-" + dsdName.toUpperCase(), "fr"));
+		logger.info("Creating DSD " + dsd.getURI());
+
+		for (MetadataRow currentRow : components) {
+			String conceptCode = currentRow.getText(0).trim();
+			String role = currentRow.getText(2).trim();
+			String conceptAlreadyExisting = currentRow.getText(3).trim();
+
+			// Attach the property to the DSD through anonymous ComponentSpecification
+			if ("Dimension".equals(role)) {
+				Resource dimensionProperty = addComponent(dsdModel, "dimension", DataCubeOntology.DimensionProperty,
+						conceptCode, conceptAlreadyExisting);
+				dsd.addProperty(DataCubeOntology.component,
+						dsdModel.createResource(DataCubeOntology.ComponentSpecification)
+								.addProperty(DataCubeOntology.dimension, dimensionProperty));
+			}
+			if ("Observation attribute".equals(role)) {
+				Resource attributeProperty = addComponent(dsdModel, "attribute", DataCubeOntology.AttributeProperty,
+						conceptCode, conceptAlreadyExisting);
+				dsd.addProperty(DataCubeOntology.component,
+						dsdModel.createResource(DataCubeOntology.ComponentSpecification)
+								.addProperty(DataCubeOntology.attribute, attributeProperty)
+								.addProperty(DataCubeOntology.componentAttachment, DataCubeOntology.Observation));
+			}
+		}
+
+		// Create and attach the measure property
+		Resource concept = dsdModel.createResource(conceptURI(measure.id), OWL.Class);
+		concept.addProperty(RDF.type, RDFS.Class);
+		concept.addProperty(RDFS.label, dsdModel.createLiteral(measure.name, "en"));
+		concept.addProperty(DC.description, dsdModel.createLiteral(measure.description, "en"));
+
+		// The component is not coded
+		Resource measureProperty = dsdModel.createResource(measure.uri, DataCubeOntology.MeasureProperty);
+		measureProperty.addProperty(RDFS.label, dsdModel.createLiteral(measure.name, "en"));
+		measureProperty.addProperty(DCTerms.identifier, dsdModel.createLiteral(measure.id, "en"));
+		measureProperty.addProperty(DataCubeOntology.concept, dsdModel.createResource(conceptURI(measure.id)));
+		measureProperty.addProperty(RDFS.range, XSD.xint);
+		dsd.addProperty(DataCubeOntology.component, dsdModel.createResource(DataCubeOntology.ComponentSpecification)
+				.addProperty(DataCubeOntology.measure, measureProperty));
+
+		Resource dimensionProperty = dsdModel.createResource(DataCubeOntology.DimensionProperty).addProperty(RDF.type,
+				"http://purl.org/linked-data/sdmx/2009/dimension#timePeriod");
+		// Attach the dimension property to the DSD through anonymous
+		// ComponentSpecification
+		dsd.addProperty(DataCubeOntology.component, dsdModel.createResource(DataCubeOntology.ComponentSpecification)
+				.addProperty(DataCubeOntology.dimension, dimensionProperty));
+
+		return dsdModel;
+	}
+
+	/**
+	 * Copies a dimension or attribute property and its concept from the registry
+	 * into a DSD model, building them on their first use.
+	 *
+	 * @return The property, in the DSD model.
+	 */
+	private static Resource addComponent(Model dsdModel, String componentType, Resource propertyType,
+			String conceptCode, String conceptAlreadyExisting) {
+		String key = componentType + "|" + conceptCode + "|" + conceptAlreadyExisting;
+		dsdModel.add(COMPONENTS.computeIfAbsent(key,
+				k -> createComponent(componentType, propertyType, conceptCode, conceptAlreadyExisting)));
+		return dsdModel.createResource(componentURI(componentType, conceptCode));
+	}
+
+	private static Model createComponent(String componentType, Resource propertyType, String conceptCode,
+			String conceptAlreadyExisting) {
+		Model componentModel = ModelFactory.createDefaultModel();
+		String conceptName = conceptCode.toLowerCase();
+		if (conceptAlreadyExisting.isEmpty()) {
+			Resource concept = componentModel.createResource(conceptURI(conceptCode), OWL.Class);
+			concept.addProperty(RDF.type, RDFS.Class);
+			concept.addProperty(RDFS.label, componentModel.createLiteral(conceptName, "fr"));
+			conceptAlreadyExisting = conceptURI(conceptCode);
+		}
+
+		Resource property = componentModel.createResource(componentURI(componentType, conceptCode), propertyType)
+				.addProperty(RDF.type, DataCubeOntology.CodedProperty);
+		property.addProperty(RDFS.label, componentModel.createLiteral(conceptName, "fr"));
+		property.addProperty(DataCubeOntology.concept, componentModel.createResource(conceptAlreadyExisting));
+		property.addProperty(DCTerms.identifier, componentModel.createLiteral(conceptCode, "fr"));
+		property.addProperty(RDFS.range, componentModel.createResource(codeConceptURI(conceptCode, conceptName)));
+		property.addProperty(DataCubeOntology.codeList,
+				componentModel.createResource(conceptSchemeURI(conceptCode, conceptName)));
+		return componentModel;
+	}
+}
@@ -0,0 +1,130 @@
+package eu.europa.ec.eurostat.los.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * The <code>BuildManifest</code> class records, for each step of a build, a
+ * content hash of its input files and the list of the output files it
+ * produced. A step is up to date when the hash of its inputs did not change and
+ * all its outputs are still present.
+ */
+public class BuildManifest {
+
+	private static final String INPUTS_SUFFIX = ".inputs";
+	private static final String OUTPUTS_SUFFIX = ".outputs";
+
+	private final String manifestFile;
+	private final Properties properties = new Properties();
+
+	private BuildManifest(String manifestFile) {
+		this.manifestFile = manifestFile;
+	}
+
+	/** Loads a manifest, which is empty if the file does not exist yet */
+	public static BuildManifest load(String manifestFile) throws IOException {
+		BuildManifest manifest = new BuildManifest(manifestFile);
+		if (new File(manifestFile).exists()) {
+			try (InputStream in = new FileInputStream(manifestFile)) {
+				manifest.properties.load(in);
+			}
+		}
+		return manifest;
+	}
+
+	public boolean isUpToDate(String step, String inputsHash) {
+		if (!inputsHash.equals(properties.getProperty(step + INPUTS_SUFFIX))) {
+			return false;
+		}
+		for (String output : getOutputs(step)) {
+			if (!new File(output).exists()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public List<String> getOutputs(String step) {
+		String outputs = properties.getProperty(step + OUTPUTS_SUFFIX);
+		if (StringUtils.isEmpty(outputs)) {
+			return Collections.emptyList();
+		}
+		List<String> files = new ArrayList<>();
+		Collections.addAll(files, outputs.split(","));
+		return files;
+	}
+
+	public void record(String step, String inputsHash, Collection<String> outputs) {
+		properties.setProperty(step + INPUTS_SUFFIX, inputsHash);
+		properties.setProperty(step + OUTPUTS_SUFFIX, outputs == null ? "" : String.join(",", outputs));
+	}
+
+	public void save() throws IOException {
+		try (OutputStream out = new FileOutputStream(manifestFile)) {
+			properties.store(out, "Content hashes of the inputs of each build step");
+		}
+	}
+
+	/**
+	 * Returns a SHA-256 hash of a set of files, combining their names and their
+	 * contents. A missing file is hashed as such, so its creation is detected.
+	 */
+	public static String hash(Collection<String> files) throws IOException {
+		return hash(files, "");
+	}
+
+	/**
+	 * Returns a SHA-256 hash of a set of files and of the options which change
+	 * the outputs built from them, so that a step is rebuilt when they change.
+	 */
+	public static String hash(Collection<String> files, String options) throws IOException {
+		List<String> sortedFiles = new ArrayList<>(files);
+		Collections.sort(sortedFiles);
+		MessageDigest digest = sha256();
+		byte[] buffer = new byte[64 * 1024];
+		for (String file : sortedFiles) {
+			digest.update(file.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			if (!new File(file).exists()) {
+				digest.update((byte) 1);
+				continue;
+			}
+			try (InputStream in = new FileInputStream(file)) {
+				int read;
+				while ((read = in.read(buffer)) > 0) {
+					digest.update(buffer, 0, read);
+				}
+			}
+		}
+		if (!options.isEmpty()) {
+			digest.update(options.getBytes(StandardCharsets.UTF_8));
+		}
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,300 @@
+package eu.europa.ec.eurostat.los.utils;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.atlas.json.JSON;
+import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.atlas.json.JsonValue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The <code>Catalogue</code> class describes the data sets of the project as
+ * declared in a JSON file: the CSV source of each DSD type, its DSD sheet in
+ * the metadata workbook, its measures, and whether their data sets are
+ * published as archives. The options of main select a subset of the data sets
+ * by name, with glob patterns or by shard, and move the generated files to
+ * another directory, so that the catalogue can be split between machines. The
+ * catalogue of the run is set by <code>fromArgs</code> and shared by all the
+ * generators.
+ */
+public class Catalogue {
+	private static Logger logger = LogManager.getLogger(Catalogue.class);
+
+	/** Option de main : fichier du catalogue */
+	public static final String OPTION_CATALOGUE = "-catalogue=";
+	/** Option de main : data sets selectionnes, motifs glob separes par des virgules, par exemple *-occni */
+	public static final String OPTION_SELECT = "-select=";
+	/** Option de main : partie k sur n des data sets du catalogue, par exemple 2/3 */
+	public static final String OPTION_SHARD = "-shard=";
+	/** Option de main : repertoire des fichiers generes, a la place de celui du catalogue */
+	public static final String OPTION_OUTPUT = "-output=";
+
+	public static final String DEFAULT_FILE = "src/main/resources/catalogue.json";
+
+	/** Catalogue of the run, the default one until fromArgs is called */
+	private static volatile Catalogue current = null;
+
+	/** A measure of a CSV source, converted to its own data set */
+	public static class DataSet {
+		private final String type;
+		private final String measure;
+		private final String csvFile;
+		private final String dsdSheet;
+		private final boolean published;
+
+		private DataSet(String type, String measure, String csvFile, String dsdSheet, boolean published) {
+			this.type = type;
+			this.measure = measure;
+			this.csvFile = csvFile;
+			this.dsdSheet = dsdSheet;
+			this.published = published;
+		}
+
+		/** Name of the data set and of its DSD, for example nuts-nacer2-occni */
+		public String getName() {
+			return dataSetName(type, measure);
+		}
+
+		/** DSD type, the prefix of the name */
+		public String getType() {
+			return type;
+		}
+
+		/** MEASURE value of the rows, for example occ_ni */
+		public String getMeasure() {
+			return measure;
+		}
+
+		/** Suffix of the name, the measure without underscore */
+		public String getSuffix() {
+			return StringUtils.remove(measure, "_");
+		}
+
+		public String getCsvFile() {
+			return csvFile;
+		}
+
+		public String getDsdSheet() {
+			return dsdSheet;
+		}
+
+		/** True if the data set goes into an archive */
+		public boolean isPublished() {
+			return published;
+		}
+	}
+
+	private final String file;
+	private final String outputDirectory;
+	private final String metadataFile;
+	/** All the data sets, in the order of the catalogue */
+	private final List<DataSet> allDataSets;
+	private final List<DataSet> dataSets;
+
+	private Catalogue(String file, String outputDirectory, String metadataFile, List<DataSet> allDataSets,
+			List<DataSet> dataSets) {
+		this.file = file;
+		this.outputDirectory = outputDirectory;
+		this.metadataFile = metadataFile;
+		this.allDataSets = Collections.unmodifiableList(allDataSets);
+		this.dataSets = Collections.unmodifiableList(dataSets);
+	}
+
+	public static String dataSetName(String type, String measure) {
+		return type + "-" + StringUtils.remove(measure, "_");
+	}
+
+	/** Returns the catalogue of the run, the default one with all its data sets if none was set */
+	public static Catalogue get() {
+		if (current == null) {
+			synchronized (Catalogue.class) {
+				if (current == null) {
+					current = read(DEFAULT_FILE, null, null, null);
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Reads the catalogue given by the options of main, applies their selection
+	 * and output directory, and makes it the catalogue of the run.
+	 */
+	public static Catalogue fromArgs(String[] args) {
+		String file = DEFAULT_FILE;
+		String select = null;
+		String shard = null;
+		String output = null;
+		for (String arg : args) {
+			if (arg.startsWith(OPTION_CATALOGUE)) {
+				file = arg.substring(OPTION_CATALOGUE.length());
+			} else if (arg.startsWith(OPTION_SELECT)) {
+				select = arg.substring(OPTION_SELECT.length());
+			} else if (arg.startsWith(OPTION_SHARD)) {
+				shard = arg.substring(OPTION_SHARD.length());
+			} else if (arg.startsWith(OPTION_OUTPUT)) {
+				output = arg.substring(OPTION_OUTPUT.length());
+			}
+		}
+		Catalogue catalogue = read(file, select, shard, output);
+		new File(catalogue.outputDirectory).mkdirs();
+		current = catalogue;
+		return catalogue;
+	}
+
+	/**
+	 * Reads a catalogue file. Its relative paths are resolved against its data and
+	 * output directories, themselves relative to the working directory.
+	 *
+	 * @param select Glob patterns of the data set names, separated by commas, or null for all.
+	 * @param shard  Part of the data sets as k/n, the data sets whose rank in the catalogue is k modulo n, or null.
+	 * @param output Directory of the generated files, or null for that of the catalogue.
+	 */
+	public static Catalogue read(String file, String select, String shard, String output) {
+		JsonObject json = JSON.read(file);
+		String dataDirectory = directory(string(json, "data", ""));
+		String outputDirectory = directory(output != null ? output : string(json, "output", ""));
+		List<PathMatcher> patterns = new ArrayList<>();
+		if (select != null) {
+			for (String pattern : StringUtils.split(select, ',')) {
+				patterns.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern.trim()));
+			}
+		}
+		int shardIndex = 0;
+		int shardCount = 1;
+		if (shard != null) {
+			shardIndex = Integer.parseInt(StringUtils.substringBefore(shard, "/")) - 1;
+			shardCount = Integer.parseInt(StringUtils.substringAfter(shard, "/"));
+			if (shardIndex < 0 || shardIndex >= shardCount) {
+				throw new IllegalArgumentException("Partie " + shard + " hors de 1/" + shardCount + " a " + shardCount
+						+ "/" + shardCount);
+			}
+		}
+
+		List<DataSet> allDataSets = new ArrayList<>();
+		List<DataSet> dataSets = new ArrayList<>();
+		for (JsonValue sourceValue : json.get("sources").getAsArray()) {
+			JsonObject source = sourceValue.getAsObject();
+			String type = string(source, "type", null);
+			String csvFile = dataDirectory + string(source, "csv", null);
+			String dsdSheet = string(source, "dsdSheet", null);
+			for (JsonValue measureValue : source.get("measures").getAsArray()) {
+				JsonObject measure = measureValue.getAsObject();
+				boolean published = !measure.hasKey("published") || measure.get("published").getAsBoolean().value();
+				DataSet dataSet = new DataSet(type, string(measure, "measure", null), csvFile, dsdSheet, published);
+				if (allDataSets.size() % shardCount == shardIndex && matches(patterns, dataSet.getName())) {
+					dataSets.add(dataSet);
+				}
+				allDataSets.add(dataSet);
+			}
+		}
+		logger.info(String.format("Catalogue %s : %d data sets selectionnes sur %d, sortie dans %s", file,
+				dataSets.size(), allDataSets.size(), outputDirectory));
+		return new Catalogue(file, outputDirectory, dataDirectory + string(json, "metadata", null), allDataSets,
+				dataSets);
+	}
+
+	private static boolean matches(List<PathMatcher> patterns, String name) {
+		if (patterns.isEmpty()) {
+			return true;
+		}
+		for (PathMatcher pattern : patterns) {
+			if (pattern.matches(Paths.get(name))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String string(JsonObject json, String key, String defaultValue) {
+		if (!json.hasKey(key)) {
+			if (defaultValue == null) {
+				throw new IllegalArgumentException("Cle " + key + " absente du catalogue : " + json);
+			}
+			return defaultValue;
+		}
+		return json.get(key).getAsString().value();
+	}
+
+	private static String directory(String path) {
+		return path.isEmpty() || path.endsWith("/") ? path : path + "/";
+	}
+
+	public String getFile() {
+		return file;
+	}
+
+	/** Directory of the generated files, ending with a slash */
+	public String getOutputDirectory() {
+		return outputDirectory;
+	}
+
+	/** Path of a generated file, from its name in the output directory */
+	public String outputFile(String name) {
+		return outputDirectory + name;
+	}
+
+	/** Excel workbook of the DSDs and code lists */
+	public String getMetadataFile() {
+		return metadataFile;
+	}
+
+	/** Selected data sets, in the order of the catalogue */
+	public List<DataSet> getDataSets() {
+		return dataSets;
+	}
+
+	/** Selected data sets which go into an archive */
+	public List<DataSet> getPublishedDataSets() {
+		List<DataSet> published = new ArrayList<>();
+		for (DataSet dataSet : dataSets) {
+			if (dataSet.isPublished()) {
+				published.add(dataSet);
+			}
+		}
+		return published;
+	}
+
+	/** Selected data sets by CSV file, for the conversions which read each file once */
+	public Map<String, List<DataSet>> getDataSetsByCsvFile() {
+		Map<String, List<DataSet>> byCsvFile = new LinkedHashMap<>();
+		for (DataSet dataSet : dataSets) {
+			byCsvFile.computeIfAbsent(dataSet.getCsvFile(), f -> new ArrayList<>()).add(dataSet);
+		}
+		return byCsvFile;
+	}
+
+	/**
+	 * CSV files of all the data sets, selected or not: the code lists are shared
+	 * by the whole catalogue.
+	 */
+	public List<String> getAllCsvFiles() {
+		Set<String> csvFiles = new LinkedHashSet<>();
+		for (DataSet dataSet : allDataSets) {
+			csvFiles.add(dataSet.getCsvFile());
+		}
+		return new ArrayList<>(csvFiles);
+	}
+
+	/** Returns a data set of the catalogue by name, selected or not, or null */
+	public DataSet getDataSet(String name) {
+		for (DataSet dataSet : allDataSets) {
+			if (dataSet.getName().equals(name)) {
+				return dataSet;
+			}
+		}
+		return null;
+	}
+}
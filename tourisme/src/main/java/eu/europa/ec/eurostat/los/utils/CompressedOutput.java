@@ -0,0 +1,99 @@
+package eu.europa.ec.eurostat.los.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+/**
+ * The <code>CompressedOutput</code> enumeration gives the ways a generated file
+ * can be written: as is, gzipped, or as the single entry of a zip archive. In
+ * the last case the archive packaging can copy the compressed entry without
+ * decompressing and compressing it again.
+ */
+public enum CompressedOutput {
+	NONE(""), GZIP(".gz"), ZIP(".zip");
+
+	/** Options of the main methods selecting the compression */
+	public static final String OPTION_GZIP = "-gzip";
+	public static final String OPTION_ZIP = "-zip";
+
+	private static final int BUFFER_SIZE = 256 * 1024;
+
+	private final String suffix;
+
+	CompressedOutput(String suffix) {
+		this.suffix = suffix;
+	}
+
+	/**
+	 * Reads the compression from the arguments of a main method, none by default.
+	 */
+	public static CompressedOutput fromArgs(String[] args) {
+		CompressedOutput compression = NONE;
+		for (String arg : args) {
+			if (OPTION_GZIP.equals(arg)) {
+				compression = GZIP;
+			} else if (OPTION_ZIP.equals(arg)) {
+				compression = ZIP;
+			}
+		}
+		return compression;
+	}
+
+	/** Returns the name of the file actually written for an uncompressed file name */
+	public String fileName(String file) {
+		return file + suffix;
+	}
+
+	/** Returns the name of a file without the suffix of its compression, the name itself if it is not compressed */
+	public static String uncompressedName(String fileName) {
+		for (CompressedOutput compression : values()) {
+			if (compression != NONE && fileName.endsWith(compression.suffix)) {
+				return fileName.substring(0, fileName.length() - compression.suffix.length());
+			}
+		}
+		return fileName;
+	}
+
+	/**
+	 * Opens the output of a file. The name of the file is completed with the
+	 * suffix of the compression and, for a zip, is used as the name of its entry.
+	 */
+	public OutputStream open(String file) throws IOException {
+		switch (this) {
+		case GZIP:
+			return new GZIPOutputStream(new FileOutputStream(fileName(file)), BUFFER_SIZE);
+		case ZIP:
+			ZipArchiveOutputStream zipStream = new ZipArchiveOutputStream(new File(fileName(file)));
+			zipStream.putArchiveEntry(new ZipArchiveEntry(new File(file).getName()));
+			return new FilterOutputStream(new BufferedOutputStream(zipStream, BUFFER_SIZE)) {
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					out.write(b, off, len);
+				}
+
+				@Override
+				public void close() throws IOException {
+					out.flush();
+					zipStream.closeArchiveEntry();
+					zipStream.close();
+				}
+			};
+		default:
+			return new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+		}
+	}
+
+	/** Tells whether a file is a zip written by the ZIP mode, whose entry can be copied raw */
+	public static boolean isZipEntry(File file) {
+		String name = file.getName();
+		return name.endsWith(ZIP.suffix) && OutputFormat.isRdfFile(name.substring(0, name.length() - ZIP.suffix.length()));
+	}
+}
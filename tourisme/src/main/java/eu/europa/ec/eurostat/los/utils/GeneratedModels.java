@@ -0,0 +1,74 @@
+package eu.europa.ec.eurostat.los.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jena.rdf.model.Model;
+
+/**
+ * The <code>GeneratedModels</code> class keeps the models written by the
+ * generators of a run, keyed by the file they were written to, so that a later
+ * stage of the same JVM reads them from memory instead of parsing the file
+ * again. It is empty and inactive until {@link #enable()} is called, so the
+ * generators run on their own always read their inputs from the files. The
+ * models returned are shared and must not be modified.
+ */
+public class GeneratedModels {
+
+	private static final Map<String, Model> MODELS = new ConcurrentHashMap<>();
+	private static final LongAdder hits = new LongAdder();
+	private static volatile boolean enabled = false;
+
+	private GeneratedModels() {
+	}
+
+	public static void enable() {
+		enabled = true;
+	}
+
+	/** Forgets the models and stops keeping new ones */
+	public static void disable() {
+		enabled = false;
+		MODELS.clear();
+	}
+
+	/** Keeps the model written to a file, if the models are kept in this run */
+	public static void register(String file, Model model) {
+		if (enabled) {
+			MODELS.put(key(file), model);
+		}
+	}
+
+	/** Returns the model written to a file during the run, null if it was not kept */
+	public static Model get(String file) {
+		if (!enabled) {
+			return null;
+		}
+		Model model = MODELS.get(key(file));
+		if (model != null) {
+			hits.increment();
+		}
+		return model;
+	}
+
+	/** Returns the number of reads served from memory */
+	public static long getHits() {
+		return hits.sum();
+	}
+
+	public static int size() {
+		return MODELS.size();
+	}
+
+	private static String key(String file) {
+		try {
+			return new File(file).getCanonicalPath();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
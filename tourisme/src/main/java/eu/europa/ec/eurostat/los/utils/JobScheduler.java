@@ -0,0 +1,202 @@
+package eu.europa.ec.eurostat.los.utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The <code>JobScheduler</code> class runs independent generation jobs (one
+ * per data set, DSD or archive) on a fixed thread pool. A failing job is
+ * reported without stopping the others, and a summary with the duration and
+ * the size of the outputs of each job is logged at the end of the run, which
+ * then fails if any job has failed.
+ */
+public class JobScheduler {
+	private static Logger logger = LogManager.getLogger(JobScheduler.class);
+
+	/** Option of the main methods giving the number of threads, for example -threads=4 */
+	public static final String OPTION_THREADS = "-threads=";
+
+	/** A job which does not know its outputs in advance returns the files it has written */
+	public interface Job {
+		Collection<String> run() throws Exception;
+	}
+
+	/** A job whose outputs are known when it is submitted */
+	public interface Action {
+		void run() throws Exception;
+	}
+
+	/** Outcome of one job */
+	public static class JobResult {
+		private final String name;
+		private final long durationMillis;
+		private final long outputBytes;
+		private final Throwable error;
+
+		JobResult(String name, long durationMillis, long outputBytes, Throwable error) {
+			this.name = name;
+			this.durationMillis = durationMillis;
+			this.outputBytes = outputBytes;
+			this.error = error;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getDurationMillis() {
+			return durationMillis;
+		}
+
+		public long getOutputBytes() {
+			return outputBytes;
+		}
+
+		public Throwable getError() {
+			return error;
+		}
+
+		public boolean isSuccess() {
+			return error == null;
+		}
+	}
+
+	/** Thrown by runAll when jobs have failed, once all the jobs have run */
+	public static class JobFailureException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private final List<JobResult> results;
+
+		JobFailureException(int failures, List<JobResult> results) {
+			super(String.format("%d job(s) sur %d en echec", failures, results.size()));
+			this.results = results;
+		}
+
+		/** The results of all the jobs, in submission order */
+		public List<JobResult> getResults() {
+			return results;
+		}
+	}
+
+	private final int threads;
+	private final List<String> names = new ArrayList<>();
+	private final List<Job> jobs = new ArrayList<>();
+
+	public JobScheduler(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Creates a scheduler whose number of threads is read from the arguments of a
+	 * main method. Without the option, jobs are run one after another.
+	 */
+	public static JobScheduler fromArgs(String[] args) {
+		int threads = 1;
+		for (String arg : args) {
+			if (arg.startsWith(OPTION_THREADS)) {
+				threads = Integer.parseInt(arg.substring(OPTION_THREADS.length()));
+			}
+		}
+		return new JobScheduler(threads);
+	}
+
+	public void submit(String name, Job job) {
+		names.add(name);
+		jobs.add(job);
+	}
+
+	public void submit(String name, Action action, String... outputFiles) {
+		submit(name, () -> {
+			action.run();
+			return Arrays.asList(outputFiles);
+		});
+	}
+
+	/**
+	 * Runs all the submitted jobs, waits for their completion and logs the
+	 * summary report.
+	 *
+	 * @return The results, in submission order.
+	 * @throws JobFailureException If a job has failed.
+	 */
+	public List<JobResult> runAll() {
+		long start = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<JobResult>> futures = new ArrayList<>();
+		for (int i = 0; i < jobs.size(); i++) {
+			futures.add(executor.submit(toCallable(names.get(i), jobs.get(i))));
+		}
+		executor.shutdown();
+
+		List<JobResult> results = new ArrayList<>();
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				results.add(futures.get(i).get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				results.add(new JobResult(names.get(i), 0, 0, e));
+			} catch (ExecutionException e) {
+				results.add(new JobResult(names.get(i), 0, 0, e.getCause()));
+			}
+		}
+		names.clear();
+		jobs.clear();
+		int failures = report(results, System.currentTimeMillis() - start);
+		if (failures > 0) {
+			throw new JobFailureException(failures, results);
+		}
+		return results;
+	}
+
+	private static Callable<JobResult> toCallable(String name, Job job) {
+		return () -> {
+			logger.info(String.format("Debut du job %s", name));
+			long start = System.currentTimeMillis();
+			try {
+				Collection<String> outputs = job.run();
+				return new JobResult(name, System.currentTimeMillis() - start, size(outputs), null);
+			} catch (Exception | Error e) {
+				logger.error(String.format("Echec du job %s", name), e);
+				return new JobResult(name, System.currentTimeMillis() - start, 0, e);
+			}
+		};
+	}
+
+	private static long size(Collection<String> outputFiles) {
+		long size = 0;
+		if (outputFiles != null) {
+			for (String outputFile : outputFiles) {
+				size += new File(outputFile).length();
+			}
+		}
+		return size;
+	}
+
+	/** Logs the summary report and returns the number of failed jobs */
+	private int report(List<JobResult> results, long wallMillis) {
+		int failures = 0;
+		long cumulatedMillis = 0;
+		for (JobResult result : results) {
+			logger.info(String.format("%-30s %-5s %8d ms %12d octets", result.getName(),
+					result.isSuccess() ? "OK" : "ECHEC", result.getDurationMillis(), result.getOutputBytes()));
+			cumulatedMillis += result.getDurationMillis();
+			if (!result.isSuccess()) {
+				failures++;
+			}
+		}
+		logger.info(String.format("%d jobs sur %d threads en %d ms (cumul %d ms), %d echec(s)", results.size(), threads,
+				wallMillis, cumulatedMillis, failures));
+		return failures;
+	}
+}
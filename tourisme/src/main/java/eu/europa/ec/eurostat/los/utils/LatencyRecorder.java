@@ -0,0 +1,59 @@
+package eu.europa.ec.eurostat.los.utils;
+
+import java.util.Arrays;
+
+/**
+ * The <code>LatencyRecorder</code> class keeps the last durations of an
+ * operation in a ring buffer and computes their percentiles on demand. It is
+ * safe for use by several threads.
+ */
+public class LatencyRecorder {
+
+	private static final int DEFAULT_CAPACITY = 8192;
+
+	private final long[] samples;
+	private long count = 0;
+
+	public LatencyRecorder() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public LatencyRecorder(int capacity) {
+		samples = new long[capacity];
+	}
+
+	public synchronized void record(long nanos) {
+		samples[(int) (count % samples.length)] = nanos;
+		count++;
+	}
+
+	/** Returns the number of durations recorded since the creation of the recorder */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns a percentile of the recorded durations in microseconds, 0 if nothing
+	 * was recorded.
+	 *
+	 * @param percentile Between 0 and 100, for example 99 for the p99.
+	 */
+	public long percentileMicros(double percentile) {
+		long[] sorted;
+		synchronized (this) {
+			sorted = Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+		}
+		if (sorted.length == 0) {
+			return 0;
+		}
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d mesures, p50 %d us, p90 %d us, p99 %d us", getCount(), percentileMicros(50),
+				percentileMicros(90), percentileMicros(99));
+	}
+}
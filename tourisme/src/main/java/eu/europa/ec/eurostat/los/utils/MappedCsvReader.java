@@ -0,0 +1,382 @@
+package eu.europa.ec.eurostat.los.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The <code>MappedCsvReader</code> class reads a UTF-8 CSV file with a header
+ * line, such as the Eurostat observation files, through a memory-mapped
+ * window. Reading a row only records where its fields start and end: the
+ * fields are then read as numbers without any allocation, compared to bytes,
+ * or decoded as strings. Coded values are interned per column, so a code seen
+ * before is returned without creating a new string.
+ * <p>
+ * Fields may be enclosed in double quotes but must not contain line breaks. A
+ * reader can be restricted to a byte range of the file, made of whole lines, so
+ * that several threads read the parts of a large file.
+ */
+public class MappedCsvReader implements Closeable {
+
+	/** Size of the mapped window; a row must fit in it */
+	private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+
+	private static final int MAX_INTERNED_PER_COLUMN = 4096;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final long windowSize;
+	/** End of the bytes read: the end of the file, or of the range */
+	private long fileSize;
+	private MappedByteBuffer buffer;
+	private long windowStart;
+	private int position;
+
+	private final String[] header;
+	private int[] fieldStarts = new int[16];
+	private int[] fieldEnds = new int[16];
+	private boolean[] fieldQuoted = new boolean[16];
+	private int fieldCount;
+	private long rowNumber = 0;
+	private byte[] scratch = new byte[256];
+	private final InternTable[] interned;
+
+	private MappedCsvReader(String fileName, long start, long end, long windowSize) throws IOException {
+		this.windowSize = windowSize;
+		file = new RandomAccessFile(fileName, "r");
+		channel = file.getChannel();
+		fileSize = channel.size();
+		map(0);
+		if (!next()) {
+			close();
+			throw new IOException("Fichier CSV vide : " + fileName);
+		}
+		header = new String[fieldCount];
+		for (int i = 0; i < fieldCount; i++) {
+			header[i] = getString(i);
+		}
+		// The header is not counted as a row
+		rowNumber = 0;
+		interned = new InternTable[header.length];
+		if (start >= 0) {
+			fileSize = Math.min(end, fileSize);
+			map(start);
+		}
+	}
+
+	/** Opens a file and reads its header line */
+	public static MappedCsvReader open(String fileName) throws IOException {
+		return new MappedCsvReader(fileName, -1, -1, WINDOW_SIZE);
+	}
+
+	/**
+	 * Opens a file, reads its header line and then only reads the rows between two
+	 * positions. The range must start at the beginning of a line after the header
+	 * and end after a line break or at the end of the file. The row numbers are
+	 * counted from the start of the range.
+	 */
+	public static MappedCsvReader open(String fileName, long start, long end) throws IOException {
+		return new MappedCsvReader(fileName, start, end, WINDOW_SIZE);
+	}
+
+	/**
+	 * Opens a file with a smaller mapped window, so that tests make rows cross
+	 * the end of a window. A negative start reads the whole file.
+	 */
+	static MappedCsvReader open(String fileName, long start, long end, long windowSize) throws IOException {
+		return new MappedCsvReader(fileName, start, end, windowSize);
+	}
+
+	public String[] getHeader() {
+		return header.clone();
+	}
+
+	/** Returns the index of a column, -1 if the header does not contain it */
+	public int column(String name) {
+		for (int i = 0; i < header.length; i++) {
+			if (header[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/** Returns the number of the current row, 1 for the first line after the header */
+	public long getRowNumber() {
+		return rowNumber;
+	}
+
+	/** Returns the number of fields of the current row */
+	public int getFieldCount() {
+		return fieldCount;
+	}
+
+	/**
+	 * Moves to the next non-empty row.
+	 *
+	 * @return false at the end of the file.
+	 */
+	public boolean next() throws IOException {
+		while (true) {
+			if (position >= buffer.limit()) {
+				if (windowStart + buffer.limit() >= fileSize) {
+					return false;
+				}
+				map(windowStart + position);
+			}
+			int end = endOfLine(position);
+			if (end < 0) {
+				if (windowStart + buffer.limit() < fileSize) {
+					if (position == 0) {
+						throw new IOException("Ligne plus longue que la fenetre de lecture a la ligne " + (rowNumber + 1));
+					}
+					map(windowStart + position);
+					continue;
+				}
+				end = buffer.limit();
+			}
+			int lineEnd = end > position && buffer.get(end - 1) == '\r' ? end - 1 : end;
+			int start = position;
+			position = end + 1;
+			if (lineEnd > start) {
+				split(start, lineEnd);
+				rowNumber++;
+				return true;
+			}
+		}
+	}
+
+	private int endOfLine(int from) {
+		int limit = buffer.limit();
+		boolean quoted = false;
+		for (int i = from; i < limit; i++) {
+			byte b = buffer.get(i);
+			if (b == '"') {
+				quoted = !quoted;
+			} else if (b == '\n' && !quoted) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void split(int start, int end) {
+		fieldCount = 0;
+		int i = start;
+		while (true) {
+			if (fieldCount == fieldStarts.length) {
+				fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+				fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+				fieldQuoted = Arrays.copyOf(fieldQuoted, fieldCount * 2);
+			}
+			boolean quoted = i < end && buffer.get(i) == '"';
+			int fieldEnd;
+			if (quoted) {
+				int j = i + 1;
+				while (j < end && !(buffer.get(j) == '"' && (j + 1 >= end || buffer.get(j + 1) != '"'))) {
+					j += buffer.get(j) == '"' ? 2 : 1;
+				}
+				fieldStarts[fieldCount] = i + 1;
+				fieldEnds[fieldCount] = Math.min(j, end);
+				fieldEnd = Math.min(j + 1, end);
+				while (fieldEnd < end && buffer.get(fieldEnd) != ',') {
+					fieldEnd++;
+				}
+			} else {
+				fieldEnd = i;
+				while (fieldEnd < end && buffer.get(fieldEnd) != ',') {
+					fieldEnd++;
+				}
+				fieldStarts[fieldCount] = i;
+				fieldEnds[fieldCount] = fieldEnd;
+			}
+			fieldQuoted[fieldCount] = quoted;
+			fieldCount++;
+			if (fieldEnd >= end) {
+				return;
+			}
+			i = fieldEnd + 1;
+		}
+	}
+
+	private void map(long start) throws IOException {
+		windowStart = start;
+		position = 0;
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, fileSize - start));
+	}
+
+	/** Tells whether a field of the current row is absent or empty */
+	public boolean isEmpty(int column) {
+		return column >= fieldCount || fieldEnds[column] == fieldStarts[column];
+	}
+
+	/** Compares a field of the current row with ASCII or UTF-8 bytes, without decoding it */
+	public boolean equalsBytes(int column, byte[] value) {
+		if (column >= fieldCount || fieldEnds[column] - fieldStarts[column] != value.length) {
+			return false;
+		}
+		int start = fieldStarts[column];
+		for (int i = 0; i < value.length; i++) {
+			if (buffer.get(start + i) != value[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses a field of the current row as a signed integer.
+	 *
+	 * @throws NumberFormatException If the field is empty, not a number or beyond the range of a long.
+	 */
+	public long getLong(int column) {
+		if (isEmpty(column)) {
+			throw new NumberFormatException("Valeur vide a la ligne " + rowNumber);
+		}
+		int i = fieldStarts[column];
+		int end = fieldEnds[column];
+		boolean negative = buffer.get(i) == '-';
+		if (negative || buffer.get(i) == '+') {
+			i++;
+		}
+		if (i == end) {
+			throw new NumberFormatException("Nombre invalide a la ligne " + rowNumber);
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			int digit = buffer.get(i) - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException(String.format("Nombre invalide a la ligne %d : %s", rowNumber,
+						getString(column)));
+			}
+			if (value > (Long.MAX_VALUE - digit) / 10) {
+				throw new NumberFormatException(String.format("Nombre trop grand a la ligne %d : %s", rowNumber,
+						getString(column)));
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/** Decodes a field of the current row, null if the row has no such field */
+	public String getString(int column) {
+		if (column >= fieldCount) {
+			return null;
+		}
+		int length = fieldEnds[column] - fieldStarts[column];
+		if (length > scratch.length) {
+			scratch = new byte[Math.max(length, scratch.length * 2)];
+		}
+		for (int i = 0; i < length; i++) {
+			scratch[i] = buffer.get(fieldStarts[column] + i);
+		}
+		String value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+		return fieldQuoted[column] ? value.replace("\"\"", "\"") : value;
+	}
+
+	/**
+	 * Returns a field of the current row as a string shared by all the rows
+	 * having the same value in this column. Meant for coded columns: beyond a few
+	 * thousand distinct values, new strings are returned without being kept.
+	 */
+	public String getInterned(int column) {
+		if (column >= fieldCount) {
+			return null;
+		}
+		if (interned[column] == null) {
+			interned[column] = new InternTable();
+		}
+		return interned[column].get(column);
+	}
+
+	/**
+	 * Closes the file. The mapped window is only dropped: as the JDK has no
+	 * public way to unmap a buffer, its memory and the handle on the file are
+	 * released when the buffer is garbage collected.
+	 */
+	@Override
+	public void close() throws IOException {
+		buffer = null;
+		channel.close();
+		file.close();
+	}
+
+	/** Open addressing table of the decoded values of a column, looked up with the bytes of the field */
+	private class InternTable {
+		private byte[][] keys = new byte[64][];
+		private String[] values = new String[64];
+		private int size = 0;
+
+		String get(int column) {
+			if (fieldQuoted[column]) {
+				return getString(column);
+			}
+			int start = fieldStarts[column];
+			int length = fieldEnds[column] - start;
+			int hash = 0x811c9dc5;
+			for (int i = 0; i < length; i++) {
+				hash = (hash ^ buffer.get(start + i)) * 0x01000193;
+			}
+			int mask = keys.length - 1;
+			int slot = hash & mask;
+			while (keys[slot] != null) {
+				if (matches(keys[slot], start, length)) {
+					return values[slot];
+				}
+				slot = (slot + 1) & mask;
+			}
+			String value = getString(column);
+			if (size >= MAX_INTERNED_PER_COLUMN) {
+				return value;
+			}
+			byte[] key = new byte[length];
+			for (int i = 0; i < length; i++) {
+				key[i] = buffer.get(start + i);
+			}
+			keys[slot] = key;
+			values[slot] = value;
+			if (++size * 2 > keys.length) {
+				resize();
+			}
+			return value;
+		}
+
+		private boolean matches(byte[] key, int start, int length) {
+			if (key.length != length) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if (key[i] != buffer.get(start + i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void resize() {
+			byte[][] oldKeys = keys;
+			String[] oldValues = values;
+			keys = new byte[oldKeys.length * 2][];
+			values = new String[oldKeys.length * 2];
+			int mask = keys.length - 1;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != null) {
+					int hash = 0x811c9dc5;
+					for (byte b : oldKeys[i]) {
+						hash = (hash ^ b) * 0x01000193;
+					}
+					int slot = hash & mask;
+					while (keys[slot] != null) {
+						slot = (slot + 1) & mask;
+					}
+					keys[slot] = oldKeys[i];
+					values[slot] = oldValues[i];
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,320 @@
+package eu.europa.ec.eurostat.los.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RowRecord;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.formula.eval.ErrorEval;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.SAXHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/**
+ * The <code>MetadataWorkbook</code> class holds the text of the cells of a
+ * metadata workbook, sheet by sheet and row by row. The workbook is read once
+ * with the event APIs of POI, HSSF records for .xls and SAX for .xlsx, without
+ * building the POI object model, and the result is shared by all the generators
+ * of the JVM until the file changes. Cells have the text <code>Cell.toString()</code> gives for text
+ * and numbers, and formulas their cached result. A loaded workbook is immutable
+ * and can be read by several threads.
+ */
+public class MetadataWorkbook {
+	private static Logger logger = LogManager.getLogger(MetadataWorkbook.class);
+
+	private static final Map<String, MetadataWorkbook> LOADED = new HashMap<>();
+
+	/** Sheets in the order of the workbook */
+	private final Map<String, MetadataSheet> sheets = new LinkedHashMap<>();
+	/** Date and size of the file when it was read */
+	private final long lastModified;
+	private final long length;
+
+	private MetadataWorkbook(File file) {
+		lastModified = file.lastModified();
+		length = file.length();
+	}
+
+	/**
+	 * Returns the workbook of a file, reading it on the first call and again when
+	 * the date or size of the file has changed since, for example when it is
+	 * edited while a pipeline or a test runs in the same JVM.
+	 */
+	public static synchronized MetadataWorkbook load(String fileName) throws IOException {
+		File file = new File(fileName);
+		String key = file.getCanonicalPath();
+		MetadataWorkbook workbook = LOADED.get(key);
+		if (workbook != null && (workbook.lastModified != file.lastModified() || workbook.length != file.length())) {
+			logger.info(String.format("Classeur %s modifie, relu", fileName));
+			workbook = null;
+		}
+		if (workbook == null) {
+			long debut = System.currentTimeMillis();
+			workbook = new MetadataWorkbook(file);
+			if (fileName.toLowerCase().endsWith(".xlsx")) {
+				workbook.readXlsx(fileName);
+			} else {
+				workbook.readXls(fileName);
+			}
+			LOADED.put(key, workbook);
+			logger.info(String.format("Classeur %s lu en %d ms : %d feuilles", fileName,
+					System.currentTimeMillis() - debut, workbook.sheets.size()));
+		}
+		return workbook;
+	}
+
+	public List<MetadataSheet> getSheets() {
+		return new ArrayList<>(sheets.values());
+	}
+
+	/** Returns a sheet by its name, ignoring case as POI does, null if there is none */
+	public MetadataSheet getSheet(String name) {
+		for (MetadataSheet sheet : sheets.values()) {
+			if (sheet.name.equalsIgnoreCase(name)) {
+				return sheet;
+			}
+		}
+		return null;
+	}
+
+	private MetadataSheet addSheet(String name) {
+		MetadataSheet sheet = new MetadataSheet(name);
+		sheets.put(name, sheet);
+		return sheet;
+	}
+
+	private void readXls(String fileName) throws IOException {
+		try (POIFSFileSystem fs = new POIFSFileSystem(new File(fileName), true)) {
+			HSSFRequest request = new HSSFRequest();
+			request.addListenerForAllRecords(new XlsListener());
+			new HSSFEventFactory().processWorkbookEvents(request, fs);
+		}
+	}
+
+	/** Receives the records of a .xls workbook: sheet names first, then the cells of each sheet */
+	private class XlsListener implements HSSFListener {
+		private final List<String> sheetNames = new ArrayList<>();
+		private int sheetIndex = 0;
+		private MetadataSheet sheet;
+		private SSTRecord strings;
+		private FormulaRecord pendingFormula;
+
+		@Override
+		public void processRecord(Record record) {
+			switch (record.getSid()) {
+			case BoundSheetRecord.sid:
+				sheetNames.add(((BoundSheetRecord) record).getSheetname());
+				break;
+			case BOFRecord.sid:
+				if (((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET) {
+					sheet = addSheet(sheetNames.get(sheetIndex++));
+				}
+				break;
+			case SSTRecord.sid:
+				strings = (SSTRecord) record;
+				break;
+			case RowRecord.sid:
+				RowRecord row = (RowRecord) record;
+				sheet.row(row.getRowNumber(), row.getLastCol());
+				break;
+			case BlankRecord.sid:
+				// Blank cells exist, with an empty text
+				BlankRecord blank = (BlankRecord) record;
+				sheet.set(blank.getRow(), blank.getColumn(), "");
+				break;
+			case LabelSSTRecord.sid:
+				LabelSSTRecord label = (LabelSSTRecord) record;
+				sheet.set(label.getRow(), label.getColumn(), strings.getString(label.getSSTIndex()).getString());
+				break;
+			case LabelRecord.sid:
+				LabelRecord oldLabel = (LabelRecord) record;
+				sheet.set(oldLabel.getRow(), oldLabel.getColumn(), oldLabel.getValue());
+				break;
+			case NumberRecord.sid:
+				NumberRecord number = (NumberRecord) record;
+				sheet.set(number.getRow(), number.getColumn(), String.valueOf(number.getValue()));
+				break;
+			case BoolErrRecord.sid:
+				BoolErrRecord boolErr = (BoolErrRecord) record;
+				sheet.set(boolErr.getRow(), boolErr.getColumn(),
+						boolErr.isBoolean() ? (boolErr.getBooleanValue() ? "TRUE" : "FALSE")
+								: ErrorEval.getText(boolErr.getErrorValue()));
+				break;
+			case FormulaRecord.sid:
+				// The cached result of a formula is kept rather than its text
+				FormulaRecord formula = (FormulaRecord) record;
+				if (formula.hasCachedResultString()) {
+					pendingFormula = formula;
+				} else {
+					sheet.set(formula.getRow(), formula.getColumn(), String.valueOf(formula.getValue()));
+				}
+				break;
+			case StringRecord.sid:
+				if (pendingFormula != null) {
+					sheet.set(pendingFormula.getRow(), pendingFormula.getColumn(),
+							((StringRecord) record).getString());
+					pendingFormula = null;
+				}
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	private void readXlsx(String fileName) throws IOException {
+		try (OPCPackage pkg = OPCPackage.open(fileName, PackageAccess.READ)) {
+			XSSFReader reader = new XSSFReader(pkg);
+			ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+			XSSFReader.SheetIterator sheetIterator = (XSSFReader.SheetIterator) reader.getSheetsData();
+			while (sheetIterator.hasNext()) {
+				try (InputStream sheetData = sheetIterator.next()) {
+					MetadataSheet sheet = addSheet(sheetIterator.getSheetName());
+					XMLReader parser = SAXHelper.newXMLReader();
+					parser.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(), null, strings,
+							new XlsxHandler(sheet), new CellTextFormatter(), false));
+					parser.parse(new InputSource(sheetData));
+				}
+			}
+		} catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+			throw new IOException("Classeur illisible : " + fileName, e);
+		}
+	}
+
+	/** Formats the numbers of .xlsx cells as the .xls reading does, 6.0 rather than 6 */
+	private static class CellTextFormatter extends DataFormatter {
+		@Override
+		public String formatRawCellContents(double value, int formatIndex, String formatString) {
+			if (DateUtil.isADateFormat(formatIndex, formatString)) {
+				return super.formatRawCellContents(value, formatIndex, formatString);
+			}
+			return String.valueOf(value);
+		}
+	}
+
+	/** Receives the cells of a sheet of a .xlsx workbook */
+	private static class XlsxHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+		private final MetadataSheet sheet;
+		private int rowNumber;
+
+		XlsxHandler(MetadataSheet sheet) {
+			this.sheet = sheet;
+		}
+
+		@Override
+		public void startRow(int rowNum) {
+			rowNumber = rowNum;
+			sheet.row(rowNum, 0);
+		}
+
+		@Override
+		public void endRow(int rowNum) {
+		}
+
+		@Override
+		public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+			sheet.set(rowNumber, new CellReference(cellReference).getCol(), formattedValue == null ? "" : formattedValue);
+		}
+
+		@Override
+		public void headerFooter(String text, boolean isHeader, String tagName) {
+		}
+	}
+
+	/** The rows of a sheet which exist in the file, in order */
+	public static class MetadataSheet {
+		private final String name;
+		private final TreeMap<Integer, MetadataRow> rows = new TreeMap<>();
+
+		private MetadataSheet(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public List<MetadataRow> getRows() {
+			return Collections.unmodifiableList(new ArrayList<>(rows.values()));
+		}
+
+		/** Returns a row by its index in the sheet, null if the file has no such row */
+		public MetadataRow getRow(int rowNumber) {
+			return rows.get(rowNumber);
+		}
+
+		private MetadataRow row(int rowNumber, int lastCellNum) {
+			MetadataRow row = rows.computeIfAbsent(rowNumber, number -> new MetadataRow());
+			row.lastCellNum = Math.max(row.lastCellNum, lastCellNum);
+			return row;
+		}
+
+		private void set(int rowNumber, int column, String value) {
+			MetadataRow row = row(rowNumber, column + 1);
+			if (column >= row.cells.length) {
+				row.cells = Arrays.copyOf(row.cells, Math.max(column + 1, row.cells.length * 2));
+			}
+			row.cells[column] = value;
+		}
+	}
+
+	/** The text of the cells of a row, null for the cells absent from the file */
+	public static class MetadataRow {
+		private String[] cells = new String[8];
+		private int lastCellNum = 0;
+
+		/** Returns the text of a cell, null if the file has no such cell */
+		public String getCell(int column) {
+			return column < cells.length ? cells[column] : null;
+		}
+
+		/** Returns the text of a cell, the empty string if the file has no such cell */
+		public String getText(int column) {
+			String cell = getCell(column);
+			return cell == null ? "" : cell;
+		}
+
+		/** Returns the index of the last cell plus one, as Row.getLastCellNum() does */
+		public int getLastCellNum() {
+			return lastCellNum;
+		}
+	}
+}
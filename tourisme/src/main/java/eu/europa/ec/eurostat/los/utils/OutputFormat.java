@@ -0,0 +1,122 @@
+package eu.europa.ec.eurostat.los.utils;
+
+import java.io.OutputStream;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFWriter;
+
+/**
+ * The <code>OutputFormat</code> enumeration gives the RDF syntaxes the
+ * generators can write. Turtle is the readable default; N-Triples, N-Quads and
+ * RDF Thrift are written as streams and are much faster to load into a triple
+ * store. In N-Quads, the triples of a file are put in a named graph.
+ */
+public enum OutputFormat {
+	TURTLE("ttl", RDFFormat.TURTLE_BLOCKS), NTRIPLES("nt", RDFFormat.NTRIPLES), NQUADS("nq", RDFFormat.NQUADS),
+	THRIFT("trdf", RDFFormat.RDF_THRIFT);
+
+	/** Option of the main methods selecting the format, by extension (-format=nq) */
+	public static final String OPTION_FORMAT = "-format=";
+
+	private final String extension;
+	private final RDFFormat streamFormat;
+
+	OutputFormat(String extension, RDFFormat streamFormat) {
+		this.extension = extension;
+		this.streamFormat = streamFormat;
+	}
+
+	/** Reads the format from the arguments of a main method, Turtle by default */
+	public static OutputFormat fromArgs(String[] args) {
+		OutputFormat format = TURTLE;
+		for (String arg : args) {
+			if (arg.startsWith(OPTION_FORMAT)) {
+				format = fromExtension(arg.substring(OPTION_FORMAT.length()));
+				if (format == null) {
+					throw new IllegalArgumentException("Format de sortie inconnu : " + arg);
+				}
+			}
+		}
+		return format;
+	}
+
+	private static OutputFormat fromExtension(String extension) {
+		for (OutputFormat format : values()) {
+			if (format.extension.equalsIgnoreCase(extension) || format.name().equalsIgnoreCase(extension)) {
+				return format;
+			}
+		}
+		return null;
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+
+	/** Returns the name of a file of this format, given its name without extension */
+	public String fileName(String baseName) {
+		return baseName + "." + extension;
+	}
+
+	/** Tells whether a file name has the extension of one of the formats */
+	public static boolean isRdfFile(String fileName) {
+		return fromExtension(FilenameUtils.getExtension(fileName)) != null;
+	}
+
+	/**
+	 * Opens a streaming writer. The caller calls start and finish on the stream,
+	 * which does not close the output.
+	 *
+	 * @param graphURI The named graph of the triples in N-Quads.
+	 */
+	public StreamRDF openStream(OutputStream out, String graphURI) {
+		StreamRDF stream = StreamRDFWriter.getWriterStream(out, streamFormat);
+		if (this == NQUADS) {
+			return StreamRDFLib.extendTriplesToQuads(NodeFactory.createURI(graphURI), stream);
+		}
+		return stream;
+	}
+
+	/**
+	 * Writes a whole model, without closing the output. Turtle is pretty-printed as
+	 * before, the other formats are streamed.
+	 */
+	public void write(OutputStream out, Model model, String graphURI) {
+		if (this == TURTLE) {
+			RDFDataMgr.write(out, model, Lang.TURTLE);
+			return;
+		}
+		StreamRDF stream = openStream(out, graphURI);
+		stream.start();
+		model.getNsPrefixMap().forEach(stream::prefix);
+		model.getGraph().find().forEachRemaining(stream::triple);
+		stream.finish();
+	}
+
+	/**
+	 * Reads a file written in any of the formats into a model. The named graphs of
+	 * an N-Quads file are merged. A model generated earlier in the same run is
+	 * returned without reading the file.
+	 */
+	public static Model read(String file) {
+		Model generated = GeneratedModels.get(file);
+		if (generated != null) {
+			return generated;
+		}
+		Dataset dataset = RDFDataMgr.loadDataset(file);
+		Model model = ModelFactory.createDefaultModel();
+		model.add(dataset.getDefaultModel());
+		dataset.listNames().forEachRemaining(name -> model.add(dataset.getNamedModel(name)));
+		model.setNsPrefixes(dataset.getDefaultModel().getNsPrefixMap());
+		return model;
+	}
+}
@@ -0,0 +1,169 @@
+package eu.europa.ec.eurostat.los.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jena.atlas.json.JsonObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The <code>RunMetrics</code> class holds the counters and timers of a run,
+ * tagged by data set, and exports them as a JSON report and as a Prometheus
+ * text file. Metrics are shared by all the generators of the JVM, so that a
+ * pipeline run reports all its stages together. Callers look a metric up once
+ * per data set and update it on the hot path, which only costs the increment
+ * of a <code>LongAdder</code>.
+ */
+public class RunMetrics {
+	private static Logger logger = LogManager.getLogger(RunMetrics.class);
+
+	/** Option de main : repertoire des rapports de metriques */
+	public static final String OPTION_METRICS = "-metrics=";
+
+	private static final String DEFAULT_DIRECTORY = "logs/";
+	private static final String REPORT_NAME = "run-metrics";
+	private static final String PREFIX = "tourisme_";
+
+	public static final String ROWS_READ = "rows_read";
+	public static final String ROWS_FILTERED = "rows_filtered";
+	public static final String TRIPLES_EMITTED = "triples_emitted";
+	public static final String BYTES_WRITTEN = "bytes_written";
+	public static final String PARSING = "parsing";
+	public static final String BUILDING = "building";
+	public static final String SERIALIZING = "serializing";
+	public static final String ARCHIVING = "archiving";
+	public static final String ARCHIVE_BYTES = "archive_bytes";
+
+	/** Metrics by name, then by data set */
+	private static final Map<String, Map<String, Metric>> METRICS = new ConcurrentHashMap<>();
+
+	private RunMetrics() {
+	}
+
+	/** A counter, or a timer which adds nanoseconds and counts the timed operations */
+	public static class Metric {
+		private final boolean timer;
+		private final LongAdder value = new LongAdder();
+		private final LongAdder count = new LongAdder();
+
+		private Metric(boolean timer) {
+			this.timer = timer;
+		}
+
+		public void add(long amount) {
+			value.add(amount);
+			count.increment();
+		}
+
+		public void increment() {
+			add(1);
+		}
+
+		/** Adds the time elapsed since a <code>System.nanoTime()</code> value */
+		public void addSince(long startNanos) {
+			add(System.nanoTime() - startNanos);
+		}
+
+		public long getValue() {
+			return value.sum();
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+	}
+
+	public static Metric counter(String name, String dataSet) {
+		return metric(name, dataSet, false);
+	}
+
+	public static Metric timer(String name, String dataSet) {
+		return metric(name, dataSet, true);
+	}
+
+	private static Metric metric(String name, String dataSet, boolean timer) {
+		return METRICS.computeIfAbsent(name, n -> new ConcurrentHashMap<>()).computeIfAbsent(dataSet,
+				d -> new Metric(timer));
+	}
+
+	/** Forgets all the metrics, for a new run in the same JVM */
+	public static void reset() {
+		METRICS.clear();
+	}
+
+	/**
+	 * Writes the metrics of the run to run-metrics.json and run-metrics.prom in the
+	 * directory given by the -metrics= option, logs/ by default.
+	 */
+	public static void export(String[] args) throws IOException {
+		String directory = DEFAULT_DIRECTORY;
+		for (String arg : args) {
+			if (arg.startsWith(OPTION_METRICS)) {
+				directory = arg.substring(OPTION_METRICS.length());
+			}
+		}
+		new File(directory).mkdirs();
+		String base = new File(directory, REPORT_NAME).getPath();
+		Files.write(Paths.get(base + ".json"), toJson().toString().getBytes(StandardCharsets.UTF_8));
+		try (PrintWriter prometheus = new PrintWriter(
+				Files.newBufferedWriter(Paths.get(base + ".prom"), StandardCharsets.UTF_8))) {
+			writePrometheus(prometheus);
+		}
+		logger.info(String.format("Metriques de %d data sets ecrites dans %s.json et %s.prom", dataSets().size(),
+				base, base));
+	}
+
+	/** Returns the metrics by data set, timers in milliseconds with their number of operations */
+	public static JsonObject toJson() {
+		JsonObject report = new JsonObject();
+		for (Map.Entry<String, Map<String, Metric>> dataSet : dataSets().entrySet()) {
+			JsonObject metrics = new JsonObject();
+			for (Map.Entry<String, Metric> metric : dataSet.getValue().entrySet()) {
+				Metric m = metric.getValue();
+				if (m.timer) {
+					metrics.put(metric.getKey() + "_millis", m.getValue() / 1000000);
+					metrics.put(metric.getKey() + "_count", m.getCount());
+				} else {
+					metrics.put(metric.getKey(), m.getValue());
+				}
+			}
+			report.put(dataSet.getKey(), metrics);
+		}
+		return report;
+	}
+
+	/** Writes the metrics in the Prometheus text format, timers as summaries in seconds */
+	public static void writePrometheus(PrintWriter out) {
+		for (Map.Entry<String, Map<String, Metric>> metric : new TreeMap<>(METRICS).entrySet()) {
+			Map<String, Metric> byDataSet = new TreeMap<>(metric.getValue());
+			boolean timer = byDataSet.values().iterator().next().timer;
+			String name = PREFIX + metric.getKey() + (timer ? "_seconds" : "_total");
+			out.println("# TYPE " + name + (timer ? " summary" : " counter"));
+			for (Map.Entry<String, Metric> dataSet : byDataSet.entrySet()) {
+				String label = "{data_set=\"" + dataSet.getKey().replace("\"", "\\\"") + "\"}";
+				if (timer) {
+					out.println(name + "_sum" + label + " " + dataSet.getValue().getValue() / 1e9);
+					out.println(name + "_count" + label + " " + dataSet.getValue().getCount());
+				} else {
+					out.println(name + label + " " + dataSet.getValue().getValue());
+				}
+			}
+		}
+	}
+
+	private static Map<String, Map<String, Metric>> dataSets() {
+		Map<String, Map<String, Metric>> dataSets = new TreeMap<>();
+		METRICS.forEach((name, byDataSet) -> byDataSet
+				.forEach((dataSet, metric) -> dataSets.computeIfAbsent(dataSet, d -> new TreeMap<>()).put(name, metric)));
+		return dataSets;
+	}
+}
@@ -0,0 +1,191 @@
+package eu.europa.ec.eurostat.los.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.apache.jena.tdb2.sys.TDBInternal;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The <code>Tdb2Sink</code> class loads generated RDF directly into a local
+ * TDB2 database, each file going into its own named graph. Triples are buffered
+ * and added in write transactions of a fixed number of triples, so that large
+ * data sets neither hold a single huge transaction nor pay a commit per row.
+ * They are loaded into a temporary graph which replaces the named graph in a
+ * single transaction at the end, so readers never see a partly loaded graph and
+ * a failed load leaves the previous one in place. TDB2 serializes the write
+ * transactions, so the generators can load several graphs from different
+ * threads.
+ */
+public class Tdb2Sink {
+	private static Logger logger = LogManager.getLogger(Tdb2Sink.class);
+
+	/** Options of the main methods: location of the database and number of triples per transaction */
+	public static final String OPTION_TDB2 = "-tdb2=";
+	public static final String OPTION_BATCH_SIZE = "-batch-size=";
+
+	public static final int DEFAULT_BATCH_SIZE = 10000;
+
+	/** Suffix of the temporary graph a named graph is loaded into */
+	private static final String LOADING_SUFFIX = "#chargement";
+
+	private final DatasetGraph dataset;
+	private final int batchSize;
+
+	private Tdb2Sink(DatasetGraph dataset, int batchSize) {
+		this.dataset = dataset;
+		this.batchSize = batchSize;
+	}
+
+	/** Connects to the database given in the arguments of a main method, null if there is none */
+	public static Tdb2Sink fromArgs(String[] args) {
+		String location = null;
+		int batchSize = DEFAULT_BATCH_SIZE;
+		for (String arg : args) {
+			if (arg.startsWith(OPTION_TDB2)) {
+				location = arg.substring(OPTION_TDB2.length());
+			} else if (arg.startsWith(OPTION_BATCH_SIZE)) {
+				batchSize = Integer.parseInt(arg.substring(OPTION_BATCH_SIZE.length()));
+			}
+		}
+		if (location == null) {
+			return null;
+		}
+		logger.info(String.format("Chargement dans la base TDB2 %s par lots de %d triplets", location, batchSize));
+		return new Tdb2Sink(DatabaseMgr.connectDatasetGraph(location), batchSize);
+	}
+
+	/**
+	 * Returns a stream loading its triples into a named graph. The previous content
+	 * of the graph is replaced by finish, which commits the last batch.
+	 */
+	public StreamRDF graphStream(String graphURI) {
+		return new GraphLoader(NodeFactory.createURI(graphURI));
+	}
+
+	/** Replaces the content of a named graph by a model */
+	public void load(String graphURI, Model model) {
+		StreamRDF stream = graphStream(graphURI);
+		stream.start();
+		model.getGraph().find().forEachRemaining(stream::triple);
+		stream.finish();
+	}
+
+	public long graphSize(String graphURI) {
+		Node graph = NodeFactory.createURI(graphURI);
+		return Txn.calculateRead(dataset, () -> dataset.getGraph(graph).size());
+	}
+
+	/** Returns a copy in memory of a named graph */
+	public Model graphModel(String graphURI) {
+		Node graph = NodeFactory.createURI(graphURI);
+		return Txn.calculateRead(dataset, () -> {
+			Model model = ModelFactory.createDefaultModel();
+			dataset.getGraph(graph).find().forEachRemaining(model.getGraph()::add);
+			return model;
+		});
+	}
+
+	/**
+	 * Checks that a named graph holds as many triples as a reference file, which
+	 * must have been written from the same input and options. The reference is
+	 * read into memory, since a streamed file may repeat triples.
+	 */
+	public boolean verify(String graphURI, String referenceFile) {
+		long expected = OutputFormat.read(referenceFile).size();
+		long loaded = graphSize(graphURI);
+		if (loaded != expected) {
+			logger.warn(String.format("Graphe %s : %d triplets charges, %d dans %s", graphURI, loaded, expected,
+					referenceFile));
+			return false;
+		}
+		logger.info(String.format("Graphe %s : %d triplets charges, comme dans %s", graphURI, loaded, referenceFile));
+		return true;
+	}
+
+	/**
+	 * Closes the database. TDB2 caches the databases by location, so it is also
+	 * removed from the cache: otherwise a later connection to the same location,
+	 * in the same run, would return the closed instance.
+	 */
+	public void close() {
+		TDBInternal.expel(dataset);
+	}
+
+	/**
+	 * Buffers the triples of a graph and adds them to its temporary graph one batch
+	 * per transaction
+	 */
+	private class GraphLoader implements StreamRDF {
+		private final Node graph;
+		private final Node loading;
+		private final List<Triple> batch = new ArrayList<>();
+		private long count = 0;
+
+		GraphLoader(Node graph) {
+			this.graph = graph;
+			this.loading = NodeFactory.createURI(graph.getURI() + LOADING_SUFFIX);
+		}
+
+		@Override
+		public void start() {
+			// What an interrupted load may have left
+			Txn.executeWrite(dataset, () -> dataset.deleteAny(loading, Node.ANY, Node.ANY, Node.ANY));
+		}
+
+		@Override
+		public void triple(Triple triple) {
+			batch.add(triple);
+			if (batch.size() >= batchSize) {
+				commit();
+			}
+		}
+
+		@Override
+		public void quad(Quad quad) {
+			triple(quad.asTriple());
+		}
+
+		@Override
+		public void base(String base) {
+		}
+
+		@Override
+		public void prefix(String prefix, String iri) {
+		}
+
+		@Override
+		public void finish() {
+			commit();
+			Txn.executeWrite(dataset, () -> {
+				List<Quad> loaded = new ArrayList<>();
+				dataset.find(loading, Node.ANY, Node.ANY, Node.ANY).forEachRemaining(loaded::add);
+				dataset.deleteAny(graph, Node.ANY, Node.ANY, Node.ANY);
+				loaded.forEach(quad -> dataset.add(graph, quad.getSubject(), quad.getPredicate(), quad.getObject()));
+				dataset.deleteAny(loading, Node.ANY, Node.ANY, Node.ANY);
+			});
+			logger.info(String.format("Graphe %s : %d triplets charges", graph.getURI(), count));
+		}
+
+		private void commit() {
+			if (batch.isEmpty()) {
+				return;
+			}
+			Txn.executeWrite(dataset, () -> batch.forEach(triple -> dataset.add(loading, triple.getSubject(),
+					triple.getPredicate(), triple.getObject())));
+			count += batch.size();
+			batch.clear();
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package eu.europa.ec.eurostat.los.codes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.junit.Test;
+
+import eu.europa.ec.eurostat.los.utils.OutputFormat;
+
+/**
+ * Checks that the chunked conversion of a CSV file gives the same data set as
+ * the sequential one, with more chunks than the workers can hold in advance,
+ * and rejects the same malformed rows.
+ */
+public class ChunkedCsvConverterTest {
+
+	private static final String TYPE_DSD = "partner";
+	private static final String MEASURE = "occ_ni";
+	private static final String CSV_FILE = "src/main/resources/data/tourism-partner-fr.csv";
+	private static final long CHUNK_SIZE = 2048;
+
+	@Test
+	public void chunkedOutputEqualsSequentialOutput() throws IOException {
+		String dataSetName = DataCubeMaker.dataSetName(TYPE_DSD, MEASURE);
+		assertTrue(ChunkedCsvConverter.decouper(CSV_FILE, 0, CHUNK_SIZE).size() > 8);
+
+		ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+		DataCubeMaker.traiterUneMeasureEnFlux(TYPE_DSD, MEASURE, CSV_FILE, sequential);
+
+		ByteArrayOutputStream chunked = new ByteArrayOutputStream();
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			new ChunkedCsvConverter(CHUNK_SIZE, pool, OutputFormat.TURTLE).convertir(CSV_FILE, MEASURE,
+					CompiledDsd.read(DataCubeMaker.dsdFile(dataSetName)), dataSetName, chunked);
+		} finally {
+			pool.shutdown();
+		}
+
+		Model expected = read(sequential);
+		Model actual = read(chunked);
+		assertEquals(expected.size(), actual.size());
+		assertTrue(expected.isIsomorphicWith(actual));
+	}
+
+	@Test
+	public void rowWithMissingValuesIsRejectedWithItsRowNumber() throws IOException {
+		String dataSetName = DataCubeMaker.dataSetName(TYPE_DSD, MEASURE);
+		List<String> lines = Files.readAllLines(Paths.get(CSV_FILE), StandardCharsets.UTF_8);
+		// A row in a later chunk loses its last value
+		int row = lines.size() * 3 / 4;
+		lines.set(row, lines.get(row).substring(0, lines.get(row).lastIndexOf(',')));
+		Path csvFile = Files.createTempFile("tourisme-partner-", ".csv");
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			Files.write(csvFile, lines, StandardCharsets.UTF_8);
+			String expected = null;
+			try {
+				DataCubeMaker.lireCsv(csvFile.toString(), MEASURE, nextLine -> {
+				});
+				fail("Ligne incomplete acceptee par la lecture sequentielle");
+			} catch (IOException e) {
+				expected = e.getMessage();
+			}
+			assertTrue(expected, expected.startsWith("Ligne " + row + " "));
+			try {
+				new ChunkedCsvConverter(CHUNK_SIZE, pool, OutputFormat.TURTLE).convertir(csvFile.toString(), MEASURE,
+						CompiledDsd.read(DataCubeMaker.dsdFile(dataSetName)), dataSetName, new ByteArrayOutputStream());
+				fail("Ligne incomplete acceptee par la conversion par chunks");
+			} catch (IOException e) {
+				assertEquals(expected, e.getMessage());
+			}
+		} finally {
+			pool.shutdown();
+			Files.delete(csvFile);
+		}
+	}
+
+	private static Model read(ByteArrayOutputStream out) {
+		Model model = ModelFactory.createDefaultModel();
+		RDFDataMgr.read(model, new ByteArrayInputStream(out.toByteArray()), Lang.TURTLE);
+		return model;
+	}
+}
@@ -0,0 +1,59 @@
+package eu.europa.ec.eurostat.los.codes;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.europa.ec.eurostat.los.utils.Catalogue;
+
+/**
+ * Checks the violations reported for a small CSV file and a small data set
+ * holding a missing dimension, a code outside its code list, a duplicate key
+ * and a missing measure, against the code lists of the catalogue.
+ */
+public class CubeValidatorTest {
+
+	private static final String CSV_FILE = "src/test/resources/validation/observations.csv";
+	private static final String DATA_SET_FILE = "src/test/resources/validation/observations.ttl";
+	private static final String DSD_FILE = "src/main/resources/rdf/dsd-tourism-nuts-nacer2-occni.ttl";
+	private static final String DATA_SET_NAME = "nuts-nacer2-occni";
+	private static final String OBSERVATION = "http://id.linked-open-statistics.org/observation/nuts-nacer2-occni/";
+	private static final String NUTS = "http://id.linked-open-statistics.org/codes/nuts/";
+
+	private CompiledDsd dsd;
+
+	@Before
+	public void setUp() throws IOException {
+		// The code lists are read from the output directory of the catalogue
+		Catalogue.fromArgs(new String[0]);
+		dsd = CompiledDsd.read(DSD_FILE);
+	}
+
+	@Test
+	public void csvViolationsHaveTheirRowNumbers() throws IOException {
+		List<String> violations = CubeValidator.validateCsv(CSV_FILE, "occ_ni", DATA_SET_NAME, dsd);
+		assertEquals(Arrays.asList(
+				"IC-11\tligne 2\tdimension NUTS sans valeur",
+				"IC-19\tligne 3\tcode ZZ9 absent de la liste de NUTS",
+				"IC-12\tligne 4\tobservation FOR.I551.FR.2017 deja lue ligne 1",
+				"IC-14\tligne 5\tvaleur de la mesure absente"), violations);
+	}
+
+	@Test
+	public void dataSetViolationsHaveTheirObservations() {
+		List<String> violations = CubeValidator.validateDataSet(DATA_SET_FILE, DATA_SET_NAME, dsd);
+		// The missing components are reported after the whole file is read, in no particular order
+		assertEquals(new TreeSet<>(Arrays.asList(
+				"IC-11\t" + OBSERVATION + "FOR.I551.2017\tdimension nuts sans valeur",
+				"IC-19\t" + OBSERVATION + "FOR.I551.ZZ9.2017\t" + NUTS + "ZZ9 absent de la liste de nuts",
+				"IC-12\t" + OBSERVATION + "NAT.I551.FR.2017\tplusieurs valeurs de measure, observation en double",
+				"IC-14\t" + OBSERVATION + "NAT.I551.FR1.2017\tmesure sans valeur")), new TreeSet<>(violations));
+		assertEquals(4, violations.size());
+	}
+}
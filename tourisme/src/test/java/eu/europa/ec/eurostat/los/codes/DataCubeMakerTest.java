@@ -0,0 +1,86 @@
+package eu.europa.ec.eurostat.los.codes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import eu.europa.ec.eurostat.los.utils.Catalogue;
+
+/**
+ * Checks that the streaming conversion of a CSV file gives the same data set as
+ * the conversion through a Model, for each data set of the catalogue since
+ * their DSDs have different dimensions and attributes.
+ */
+@RunWith(Parameterized.class)
+public class DataCubeMakerTest {
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> dataSets() {
+		Collection<Object[]> dataSets = new ArrayList<>();
+		for (Catalogue.DataSet dataSet : Catalogue.fromArgs(new String[0]).getDataSets()) {
+			dataSets.add(new Object[] { dataSet.getName(), dataSet });
+		}
+		return dataSets;
+	}
+
+	@Parameter(0)
+	public String name;
+
+	@Parameter(1)
+	public Catalogue.DataSet dataSet;
+
+	private Path output;
+
+	@Before
+	public void setUp() throws IOException {
+		// The data set is written in a temporary output directory, next to a copy of its DSD
+		output = Files.createTempDirectory("tourisme-test-");
+		String dsdName = "dsd-tourism-" + dataSet.getName() + ".ttl";
+		Files.copy(Paths.get("src/main/resources/rdf", dsdName), output.resolve(dsdName));
+		Catalogue.fromArgs(new String[] { Catalogue.OPTION_OUTPUT + output });
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Catalogue.fromArgs(new String[0]);
+		FileUtils.deleteDirectory(output.toFile());
+	}
+
+	@Test
+	public void streamedOutputIsIsomorphicWithModelOutput() throws IOException {
+		String dataSetName = dataSet.getName();
+		DataCubeMaker.traiterUneMeasure(dataSet.getType(), dataSet.getMeasure(), dataSet.getCsvFile());
+		Model fromModel = RDFDataMgr.loadModel(DataCubeMaker.dataSetFile(dataSetName));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DataCubeMaker.traiterUneMeasureEnFlux(dataSet.getType(), dataSet.getMeasure(), dataSet.getCsvFile(), out);
+		Model streamed = ModelFactory.createDefaultModel();
+		RDFDataMgr.read(streamed, new ByteArrayInputStream(out.toByteArray()), Lang.TURTLE);
+
+		assertTrue(new File(DataCubeMaker.dataSetFile(dataSetName)).length() > 0);
+		assertEquals(fromModel.size(), streamed.size());
+		assertTrue(fromModel.isIsomorphicWith(streamed));
+	}
+}
@@ -0,0 +1,72 @@
+package eu.europa.ec.eurostat.los.codes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.europa.ec.eurostat.los.utils.OutputFormat;
+
+/**
+ * Checks the roll-up of a small cube up a three-level NUTS hierarchy, FR then
+ * FR1 and FRB then FR10 and FRB0, with a value beyond the range of an int and a
+ * published total which differs from the sum of its children.
+ */
+public class HierarchyRollUpTest {
+
+	private static final String CSV_FILE = "src/test/resources/rollup/observations.csv";
+	private static final String CL_FILE = "src/test/resources/rollup/cl-nuts.ttl";
+	private static final String DSD_FILE = "src/main/resources/rdf/dsd-tourism-nuts-nacer2-occni.ttl";
+
+	private CompiledDsd dsd;
+	private HierarchyRollUp rollUp;
+
+	@Before
+	public void setUp() throws IOException {
+		dsd = CompiledDsd.read(DSD_FILE);
+		ObservationCube cube = ObservationCube.read(CSV_FILE, "occ_ni", dsd);
+		rollUp = HierarchyRollUp.compute(cube, "NUTS", CodeHierarchy.fromNuts(CL_FILE));
+	}
+
+	@Test
+	public void leavesAreAddedToAllTheirAncestors() {
+		Map<String, Long> expected = new TreeMap<>();
+		expected.put("FOR.I551.FR.2017", 3000000005L);
+		expected.put("FOR.I551.FR1.2017", 3000000000L);
+		expected.put("FOR.I551.FRB.2017", 5L);
+		assertEquals(expected, rollUp.getAggregates(dsd));
+	}
+
+	@Test
+	public void totalsDifferingFromTheirChildrenAreCounted() {
+		// FRB is published as 7 for a single child FRB0 of 5, FR and FR1 match their children
+		assertEquals(1, rollUp.checkTotals());
+	}
+
+	@Test
+	public void aggregatesBeyondTheIntRangeAreWrittenAsLongs() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		rollUp.write(out, OutputFormat.TURTLE, "test-agg-nuts", dsd);
+		Model model = ModelFactory.createDefaultModel();
+		RDFDataMgr.read(model, new ByteArrayInputStream(out.toByteArray()), Lang.TURTLE);
+
+		Resource total = model.getResource(Configuration.observationURI("test-agg-nuts", "FOR.I551.FR.2017"));
+		assertTrue(model.contains(total, dsd.measureProperty,
+				model.createTypedLiteral("3000000005", XSDDatatype.XSDlong)));
+		Resource frb = model.getResource(Configuration.observationURI("test-agg-nuts", "FOR.I551.FRB.2017"));
+		assertEquals(5, model.getProperty(frb, dsd.measureProperty).getInt());
+	}
+}
@@ -0,0 +1,72 @@
+package eu.europa.ec.eurostat.los.codes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that the node-level writer of the streaming conversions gives the same
+ * triples as DataCubeMaker.traiterLigne, for values in and beyond the range of
+ * an int.
+ */
+public class ObservationTripleWriterTest {
+
+	private static final String DSD_FILE = "src/main/resources/rdf/dsd-tourism-nuts-nacer2-occni.ttl";
+	private static final String DATA_SET_NAME = "nuts-nacer2-occni";
+
+	private static CompiledDsd dsd;
+
+	@BeforeClass
+	public static void compileDsd() {
+		dsd = CompiledDsd.read(DSD_FILE);
+	}
+
+	private static Map<String, String> row(String nuts, String value) {
+		Map<String, String> row = new HashMap<>();
+		row.put("MEASURE", "occ_ni");
+		row.put("C_RESID", "FOR");
+		row.put("NUTS", nuts);
+		row.put("NACE_R2", "I551");
+		row.put(CompiledDsd.TIME_PERIOD_COLUMN, "2017");
+		row.put(CompiledDsd.OBS_VALUE_COLUMN, value);
+		row.put("OBS_STATUS", "A");
+		row.put("CONF_STATUS", "F");
+		row.put("UNIT", "NR");
+		return row;
+	}
+
+	@Test
+	public void writerAndModelAgreeOnIntAndLongValues() {
+		String[][] rows = { { "FR", "42" }, { "FR1", "+5" }, { "FR10", "007" }, { "FRB", "-3" },
+				{ "FRB0", "2147483647" }, { "FRC", "2147483648" }, { "FRC1", "3000000000" } };
+		String dataSetURI = DataCubeMaker.dataSetURI(DATA_SET_NAME);
+
+		Model fromModel = DataCubeMaker.createDataSetModel();
+		Resource dataSet = fromModel.createResource(dataSetURI);
+		Model streamed = ModelFactory.createDefaultModel();
+		ObservationTripleWriter writer = new ObservationTripleWriter(dsd, dataSetURI);
+		for (String[] values : rows) {
+			Map<String, String> row = row(values[0], values[1]);
+			String observationURI = Configuration.observationURI(DATA_SET_NAME, dsd.observationKey(row));
+			DataCubeMaker.traiterLigne(fromModel, dataSet, observationURI, row, dsd);
+			writer.write(observationURI, row, StreamRDFLib.graph(streamed.getGraph()));
+		}
+
+		assertEquals(fromModel.size(), streamed.size());
+		assertTrue(fromModel.isIsomorphicWith(streamed));
+		assertTrue(streamed.contains(null, dsd.measureProperty,
+				streamed.createTypedLiteral("3000000000", XSDDatatype.XSDlong)));
+		assertTrue(streamed.contains(null, dsd.measureProperty,
+				streamed.createTypedLiteral("2147483647", XSDDatatype.XSDint)));
+	}
+}
@@ -0,0 +1,217 @@
+package eu.europa.ec.eurostat.los.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the parsing of the memory-mapped CSV reader: quoted fields, Windows
+ * line breaks, rows crossing the end of the mapped window, byte ranges and
+ * numbers.
+ */
+public class MappedCsvReaderTest {
+
+	private Path csvFile;
+
+	@Before
+	public void setUp() throws IOException {
+		csvFile = Files.createTempFile("tourisme-mapped-", ".csv");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(csvFile);
+	}
+
+	private String write(String content) throws IOException {
+		Files.write(csvFile, content.getBytes(StandardCharsets.UTF_8));
+		return csvFile.toString();
+	}
+
+	/** Reads the rows of a reader as lists of decoded fields */
+	private static List<List<String>> rows(MappedCsvReader reader) throws IOException {
+		List<List<String>> rows = new ArrayList<>();
+		while (reader.next()) {
+			List<String> row = new ArrayList<>();
+			for (int i = 0; i < reader.getFieldCount(); i++) {
+				row.add(reader.getString(i));
+			}
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	@Test
+	public void quotedFieldsKeepTheirCommasAndDoubledQuotes() throws IOException {
+		String fileName = write("CODE,LABEL,VALUE\n\"FR\",\"Lieu dit \"\"Le Bourg\"\", centre\",12\nDE,\"a,b\",\"\"\n");
+		try (MappedCsvReader reader = MappedCsvReader.open(fileName)) {
+			assertTrue(reader.next());
+			assertEquals(3, reader.getFieldCount());
+			assertEquals("FR", reader.getString(0));
+			assertEquals("Lieu dit \"Le Bourg\", centre", reader.getString(1));
+			assertEquals("Lieu dit \"Le Bourg\", centre", reader.getInterned(1));
+			assertEquals(12, reader.getLong(2));
+			assertTrue(reader.next());
+			assertEquals(3, reader.getFieldCount());
+			assertEquals("a,b", reader.getString(1));
+			assertTrue(reader.isEmpty(2));
+			assertFalse(reader.next());
+		}
+	}
+
+	@Test
+	public void windowsLineBreaksAreNotPartOfTheFields() throws IOException {
+		String fileName = write("CODE,VALUE\r\nFR,1\r\n\r\nDE,\"2\"\r\nIT,3");
+		try (MappedCsvReader reader = MappedCsvReader.open(fileName)) {
+			assertArrayEquals(new String[] { "CODE", "VALUE" }, reader.getHeader());
+			assertTrue(reader.next());
+			assertEquals(1, reader.getLong(1));
+			assertTrue(reader.equalsBytes(0, "FR".getBytes(StandardCharsets.US_ASCII)));
+			assertTrue(reader.next());
+			// The empty line is skipped, and is not a row
+			assertEquals(2, reader.getRowNumber());
+			assertEquals(2, reader.getLong(1));
+			assertTrue(reader.next());
+			assertEquals("IT", reader.getString(0));
+			assertEquals(3, reader.getLong(1));
+			assertFalse(reader.next());
+		}
+	}
+
+	@Test
+	public void rowsCrossingTheWindowAreReadWhole() throws IOException {
+		StringBuilder content = new StringBuilder("NUTS,OBS_VALUE\n");
+		for (int i = 0; i < 50; i++) {
+			content.append(i % 3 == 0 ? "\"FR" + i + "\"" : "FR" + i).append(',').append(i * 1000003L).append('\n');
+		}
+		String fileName = write(content.toString());
+		List<List<String>> expected;
+		try (MappedCsvReader reader = MappedCsvReader.open(fileName)) {
+			expected = rows(reader);
+		}
+		assertEquals(50, expected.size());
+		// Windows of a few rows, not a multiple of their length
+		try (MappedCsvReader reader = MappedCsvReader.open(fileName, -1, -1, 37)) {
+			List<String> codes = new ArrayList<>();
+			while (reader.next()) {
+				assertEquals(reader.getRowNumber() - 1, reader.getLong(1) / 1000003L);
+				codes.add(reader.getInterned(0));
+			}
+			assertEquals(50, reader.getRowNumber());
+			for (int i = 0; i < codes.size(); i++) {
+				assertEquals(expected.get(i).get(0), codes.get(i));
+			}
+		}
+		try (MappedCsvReader reader = MappedCsvReader.open(fileName, -1, -1, 37)) {
+			assertEquals(expected, rows(reader));
+		}
+	}
+
+	@Test
+	public void rowLongerThanTheWindowIsRejected() throws IOException {
+		String fileName = write("CODE,LABEL\nFR,France metropolitaine et departements d'outre-mer\n");
+		try (MappedCsvReader reader = MappedCsvReader.open(fileName, -1, -1, 20)) {
+			reader.next();
+			fail("Ligne plus longue que la fenetre acceptee");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("ligne 1"));
+		}
+	}
+
+	@Test
+	public void rangesReadTheirOwnRows() throws IOException {
+		String header = "CODE,VALUE\n";
+		String first = "FR,1\nDE,2\n";
+		String second = "IT,3\r\nES,4";
+		String fileName = write(header + first + second);
+		long start = header.length();
+		long middle = start + first.length();
+		long end = middle + second.length();
+		try (MappedCsvReader reader = MappedCsvReader.open(fileName, start, middle)) {
+			assertArrayEquals(new String[] { "CODE", "VALUE" }, reader.getHeader());
+			assertTrue(reader.next());
+			assertEquals(1, reader.getRowNumber());
+			assertEquals("FR", reader.getString(0));
+			assertTrue(reader.next());
+			assertEquals("DE", reader.getString(0));
+			assertFalse(reader.next());
+		}
+		try (MappedCsvReader reader = MappedCsvReader.open(fileName, middle, end)) {
+			assertTrue(reader.next());
+			assertEquals(1, reader.getRowNumber());
+			assertEquals(3, reader.getLong(1));
+			assertTrue(reader.next());
+			assertEquals(2, reader.getRowNumber());
+			assertEquals(4, reader.getLong(1));
+			assertFalse(reader.next());
+		}
+		// A small window over a range starting after the first window
+		try (MappedCsvReader reader = MappedCsvReader.open(fileName, middle, end, 12)) {
+			assertEquals(2, rows(reader).size());
+		}
+	}
+
+	@Test
+	public void numbersAreParsedWithinTheRangeOfALong() throws IOException {
+		String fileName = write("VALUE\n9223372036854775807\n-2147483649\n+7\n0042\n");
+		try (MappedCsvReader reader = MappedCsvReader.open(fileName)) {
+			long[] expected = { Long.MAX_VALUE, -2147483649L, 7, 42 };
+			for (long value : expected) {
+				assertTrue(reader.next());
+				assertEquals(value, reader.getLong(0));
+			}
+			assertFalse(reader.next());
+		}
+	}
+
+	@Test
+	public void invalidNumbersAreRejectedWithTheirRow() throws IOException {
+		String[] invalid = { "9223372036854775808", "12a", "-", "1.5", "\"\"" };
+		String fileName = write("CODE,VALUE\n" + String.join("\n", prefix("FR,", invalid)) + "\n");
+		try (MappedCsvReader reader = MappedCsvReader.open(fileName)) {
+			for (String value : invalid) {
+				assertTrue(reader.next());
+				try {
+					reader.getLong(1);
+					fail("Nombre invalide accepte : " + value);
+				} catch (NumberFormatException e) {
+					assertTrue(e.getMessage(), e.getMessage().contains("ligne " + reader.getRowNumber()));
+				}
+			}
+			assertFalse(reader.next());
+		}
+	}
+
+	private static String[] prefix(String prefix, String[] values) {
+		String[] prefixed = new String[values.length];
+		for (int i = 0; i < values.length; i++) {
+			prefixed[i] = prefix + values[i];
+		}
+		return prefixed;
+	}
+
+	@Test
+	public void codesAreInternedPerColumn() throws IOException {
+		String fileName = write("CODE,OTHER\nFR,FR\nFR,DE\n");
+		try (MappedCsvReader reader = MappedCsvReader.open(fileName)) {
+			reader.next();
+			String first = reader.getInterned(0);
+			reader.next();
+			assertSame(first, reader.getInterned(0));
+		}
+	}
+}
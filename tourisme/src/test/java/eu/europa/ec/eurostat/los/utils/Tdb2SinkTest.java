@@ -0,0 +1,150 @@
+package eu.europa.ec.eurostat.los.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.europa.ec.eurostat.los.codes.CodelistMaker;
+import eu.europa.ec.eurostat.los.codes.Configuration;
+import eu.europa.ec.eurostat.los.codes.DataCubeMaker;
+
+/**
+ * Checks that a data set loaded into a TDB2 database holds the triples of its
+ * Turtle file, that the database can be opened again after being closed, and
+ * that the generators loading the whole catalogue into TDB2 give the graphs of
+ * the files they write otherwise.
+ */
+public class Tdb2SinkTest {
+
+	private static final String DATA_SET_FILE = "src/main/resources/rdf/ds-tourism-partner-occni.ttl";
+	private static final String GRAPH_URI = "http://id.insee.fr/test/ds-tourism-partner-occni";
+
+	private static final String RDF_DIRECTORY = "src/main/resources/rdf";
+
+	private Path location;
+
+	@Before
+	public void setUp() throws IOException {
+		location = Files.createTempDirectory("tourisme-tdb2-");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(location.toFile());
+	}
+
+	private Tdb2Sink connect(int batchSize) {
+		return Tdb2Sink.fromArgs(new String[] { Tdb2Sink.OPTION_TDB2 + location,
+				Tdb2Sink.OPTION_BATCH_SIZE + batchSize });
+	}
+
+	@Test
+	public void loadedGraphHasTheSizeOfTheTurtleFile() {
+		Model model = RDFDataMgr.loadModel(DATA_SET_FILE);
+		// Small batches, so that the graph is loaded in several transactions
+		Tdb2Sink sink = connect(1000);
+		try {
+			StreamRDF stream = sink.graphStream(GRAPH_URI);
+			RDFDataMgr.parse(stream, DATA_SET_FILE);
+			assertEquals(model.size(), sink.graphSize(GRAPH_URI));
+			assertTrue(sink.verify(GRAPH_URI, DATA_SET_FILE));
+		} finally {
+			sink.close();
+		}
+	}
+
+	@Test
+	public void graphIsReplacedOnlyWhenTheLoadFinishes() {
+		Model model = RDFDataMgr.loadModel(DATA_SET_FILE);
+		Tdb2Sink sink = connect(1000);
+		try {
+			sink.load(GRAPH_URI, model);
+			StreamRDF stream = sink.graphStream(GRAPH_URI);
+			stream.start();
+			model.listStatements().toList().subList(0, 2500).forEach(statement -> stream.triple(statement.asTriple()));
+			// Two batches are committed, but the previous graph is still the one read
+			assertEquals(model.size(), sink.graphSize(GRAPH_URI));
+			stream.finish();
+			assertEquals(2500, sink.graphSize(GRAPH_URI));
+		} finally {
+			sink.close();
+		}
+	}
+
+	@Test
+	public void databaseIsOpenedAgainAfterClose() {
+		Model model = RDFDataMgr.loadModel(DATA_SET_FILE);
+		Tdb2Sink sink = connect(Tdb2Sink.DEFAULT_BATCH_SIZE);
+		sink.load(GRAPH_URI, model);
+		sink.close();
+
+		// As in a pipeline run, where each stage used to connect to the same location
+		Tdb2Sink reopened = connect(Tdb2Sink.DEFAULT_BATCH_SIZE);
+		try {
+			assertEquals(model.size(), reopened.graphSize(GRAPH_URI));
+			reopened.load(GRAPH_URI, model);
+			assertEquals(model.size(), reopened.graphSize(GRAPH_URI));
+		} finally {
+			reopened.close();
+		}
+	}
+
+	@Test
+	public void catalogueLoadedIntoTdb2MatchesTheFiles() throws IOException {
+		Path output = Files.createTempDirectory("tourisme-output-");
+		try {
+			// The DSDs are read from the output directory by both runs, and loaded into TDB2 with their data set
+			for (File dsd : new File(RDF_DIRECTORY).listFiles((directory, name) -> name.startsWith("dsd-"))) {
+				Files.copy(dsd.toPath(), output.resolve(dsd.getName()));
+			}
+			String[] args = { Catalogue.OPTION_OUTPUT + output, RunMetrics.OPTION_METRICS + output.resolve("metrics") };
+			CodelistMaker.generer(args, null);
+			DataCubeMaker.generer(args, null);
+			Tdb2Sink sink = connect(Tdb2Sink.DEFAULT_BATCH_SIZE);
+			try {
+				CodelistMaker.generer(args, sink);
+				DataCubeMaker.generer(args, sink);
+
+				int graphs = 0;
+				for (File file : output.toFile().listFiles((directory, name) -> name.endsWith(".ttl"))) {
+					Model written = RDFDataMgr.loadModel(file.getPath());
+					String graphURI = graphURI(file.getName(), written);
+					assertTrue(file.getName(), sink.graphModel(graphURI).isIsomorphicWith(written));
+					graphs++;
+				}
+				// The code lists, and the DSD and data set of each measure of the catalogue
+				assertEquals(10 + 2 * Catalogue.get().getDataSets().size(), graphs);
+			} finally {
+				sink.close();
+			}
+		} finally {
+			Catalogue.fromArgs(new String[0]);
+			FileUtils.deleteDirectory(output.toFile());
+		}
+	}
+
+	/** Returns the named graph the generators load the content of a file into */
+	private static String graphURI(String fileName, Model written) {
+		String baseName = fileName.substring(0, fileName.length() - ".ttl".length());
+		if (baseName.startsWith("cl-")) {
+			return Configuration.CODES_BASE_URI + baseName.substring("cl-".length());
+		}
+		if (baseName.startsWith("ds-")) {
+			return Configuration.BASE_URI + "dataSet/" + baseName.substring("ds-".length());
+		}
+		return written.listResourcesWithProperty(RDF.type, DataCubeOntology.DataStructureDefinition).next().getURI();
+	}
+}